@@ -0,0 +1,24 @@
+package com.example.core.objects.api.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Запрос нескольких объектов по id и guid
+ */
+@Getter
+@Setter
+public class BatchGetRequest {
+
+  private List<Integer> ids = new ArrayList<>();
+
+  private List<UUID> guids = new ArrayList<>();
+
+  /**
+   * Кодовые имена полей. Если не заданы, загружаются все поля
+   */
+  private List<String> fields;
+}
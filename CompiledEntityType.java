@@ -0,0 +1,139 @@
+package com.example.core.model;
+
+import com.example.core.model.entities.EntityType;
+import com.example.core.model.entities.Field;
+import com.example.core.model.entities.FieldType;
+import com.example.core.model.entities.fields.BaseField;
+import com.example.core.model.entities.fields.GeometryField;
+import com.example.core.model.entities.fields.RelationField;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import lombok.NonNull;
+import org.apache.commons.collections4.map.CaseInsensitiveMap;
+
+/**
+ * Неизменяемое представление класса объектов для быстрого поиска полей.
+ *
+ * Строится один раз для таблицы класса и читается без блокировок, пока не придет
+ * {@link EntityTypeChangedEvent}. После события следующее обращение собирает представление с
+ * новой версией
+ */
+@Getter
+public final class CompiledEntityType {
+
+  private static final Map<String, CompiledEntityType> COMPILED = new ConcurrentHashMap<>();
+
+  private static final AtomicLong VERSIONS = new AtomicLong();
+
+  /**
+   * Версия представления, растет при каждой сборке
+   */
+  private final long version;
+
+  /**
+   * Поля класса в порядке модели
+   */
+  private final List<BaseField> fields;
+
+  private final List<Field> standardFields;
+
+  /**
+   * Обязательные поля класса
+   */
+  private final List<BaseField> requiredFields;
+
+  private final List<RelationField> relationFields;
+
+  private final List<GeometryField> geometryFields;
+
+  /**
+   * Стандартные поля и поля класса по кодовому имени без учета регистра
+   */
+  private final Map<String, Field> fieldIndex;
+
+  private final Field[] standardFieldArray;
+
+  private CompiledEntityType(EntityType entityType) {
+    this.version = VERSIONS.incrementAndGet();
+    this.fields = Collections.unmodifiableList(new ArrayList<>(entityType.getFields()));
+    this.standardFieldArray = EntityUtils.standardFields(entityType);
+    this.standardFields = Collections.unmodifiableList(Arrays.asList(standardFieldArray));
+
+    List<BaseField> required = new ArrayList<>();
+    List<RelationField> relations = new ArrayList<>();
+    List<GeometryField> geometries = new ArrayList<>();
+    Map<String, Field> index = new CaseInsensitiveMap<>();
+    standardFields.forEach(field -> index.put(field.getCodeName(), field));
+    for (BaseField field : fields) {
+      index.put(field.getCodeName(), field);
+      if (field.isRequired()) {
+        required.add(field);
+      }
+      if (field.getFieldType() == FieldType.RELATION) {
+        relations.add((RelationField) field);
+      } else if (field.getFieldType() == FieldType.GEOMETRY) {
+        geometries.add((GeometryField) field);
+      }
+    }
+    this.requiredFields = Collections.unmodifiableList(required);
+    this.relationFields = Collections.unmodifiableList(relations);
+    this.geometryFields = Collections.unmodifiableList(geometries);
+    this.fieldIndex = Collections.unmodifiableMap(index);
+  }
+
+  /**
+   * Получить представление класса объектов
+   *
+   * @param entityType класс объектов
+   * @return представление, построенное после последнего изменения класса
+   */
+  public static CompiledEntityType of(@NonNull EntityType entityType) {
+    String table = DbNameProvider.entityTypeTable(entityType);
+    CompiledEntityType compiled = COMPILED.get(table);
+    return compiled != null ? compiled
+        : COMPILED.computeIfAbsent(table, key -> new CompiledEntityType(entityType));
+  }
+
+  /**
+   * Сбросить представление измененного или удаленного класса
+   *
+   * @param entityType класс объектов
+   */
+  public static void invalidate(@NonNull EntityType entityType) {
+    COMPILED.remove(DbNameProvider.entityTypeTable(entityType));
+  }
+
+  /**
+   * Найти поле по кодовому имени без учета регистра
+   *
+   * @param codeName кодовое имя стандартного поля или поля класса
+   */
+  public Optional<Field> field(String codeName) {
+    return codeName == null ? Optional.empty() : Optional.ofNullable(fieldIndex.get(codeName));
+  }
+
+  /**
+   * Найти поле класса по кодовому имени без учета регистра
+   *
+   * @param codeName кодовое имя поля класса
+   */
+  public Optional<BaseField> baseField(String codeName) {
+    return field(codeName)
+        .filter(BaseField.class::isInstance)
+        .map(BaseField.class::cast);
+  }
+
+  /**
+   * Стандартные поля для передачи в запрос
+   */
+  public Field[] getStandardFieldArray() {
+    return standardFieldArray.clone();
+  }
+}
@@ -0,0 +1,20 @@
+package com.example.core.model;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Сброс представлений {@link CompiledEntityType} при изменении модели класса
+ */
+@Component
+public class CompiledEntityTypeInvalidator {
+
+  /**
+   * Сбросить представление класса после завершения транзакции, изменившей модель
+   */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+  public void onEntityTypeChanged(EntityTypeChangedEvent event) {
+    CompiledEntityType.invalidate(event.getEntityType());
+  }
+}
@@ -0,0 +1,20 @@
+package com.example.core.objects.entities;
+
+/**
+ * Способ подсчета общего количества объектов при постраничной загрузке
+ */
+public enum CountMode {
+  /**
+   * Точное количество, считается оконной функцией в запросе страницы
+   */
+  EXACT,
+  /**
+   * Оценка количества по плану запроса PostgreSQL
+   */
+  ESTIMATED,
+  /**
+   * Количество не считается. Общее количество страницы - нижняя граница, по которой можно
+   * определить только наличие следующей страницы
+   */
+  NONE
+}
@@ -0,0 +1,78 @@
+package com.example.core.objects.repository;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Строка данных для {@code COPY ... FROM STDIN (FORMAT csv)}.
+ *
+ * Значения добавляются в порядке колонок команды COPY. {@code null} записывается пустым
+ * значением без кавычек, остальные значения всегда берутся в кавычки. Массивы записываются
+ * литералом массива PostgreSQL
+ */
+final class CsvCopyRow {
+
+  private final StringBuilder row = new StringBuilder(256);
+
+  private boolean first = true;
+
+  /**
+   * Добавить значение колонки
+   *
+   * @param value значение, уже приведенное к виду для записи в базу
+   * @return текущая строка
+   */
+  CsvCopyRow add(Object value) {
+    if (!first) {
+      row.append(',');
+    }
+    first = false;
+    if (value != null) {
+      quote(value instanceof Object[] ? arrayLiteral((Object[]) value) : value.toString());
+    }
+    return this;
+  }
+
+  /**
+   * Завершить строку и получить ее байты в UTF-8
+   */
+  byte[] toBytes() {
+    row.append('\n');
+    return row.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private void quote(String value) {
+    row.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"') {
+        row.append('"');
+      }
+      row.append(c);
+    }
+    row.append('"');
+  }
+
+  private static String arrayLiteral(Object[] values) {
+    StringBuilder literal = new StringBuilder("{");
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        literal.append(',');
+      }
+      if (values[i] == null) {
+        literal.append("NULL");
+        continue;
+      }
+      String value = values[i].toString();
+      literal.append('"');
+      for (int j = 0; j < value.length(); j++) {
+        char c = value.charAt(j);
+        if (c == '"' || c == '\\') {
+          literal.append('\\');
+        }
+        literal.append(c);
+      }
+      literal.append('"');
+    }
+    return literal.append('}').toString();
+  }
+}
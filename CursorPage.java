@@ -0,0 +1,28 @@
+package com.example.core.objects.entities;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Страница объектов при чтении по ключу
+ *
+ * @param <T> тип элементов страницы
+ */
+@Getter
+@AllArgsConstructor
+public class CursorPage<T> {
+
+  private final List<T> content;
+
+  /**
+   * Позиция для чтения следующей страницы. {@code null}, если страница последняя
+   */
+  private final String cursor;
+
+  public <R> CursorPage<R> map(Function<? super T, ? extends R> mapper) {
+    return new CursorPage<>(content.stream().map(mapper).collect(Collectors.toList()), cursor);
+  }
+}
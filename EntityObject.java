@@ -8,12 +8,16 @@ import com.example.core.model.entities.Field;
 import com.example.core.model.entities.StandardField;
 import com.example.core.objects.api.dto.ObjectAttachment;
 import com.example.core.objects.entities.attributes.Attribute;
+import com.example.core.objects.entities.attributes.Geometry;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
@@ -52,6 +56,13 @@ public class EntityObject {
 
   private boolean checkRule = true;
 
+  /**
+   * Кодовые имена измененных полей. {@code null}, если изменения не отслеживаются
+   */
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private Set<String> changedFields;
+
   public EntityObject(int id, String entityType, String name) {
     this.id = id;
     this.entityType = entityType;
@@ -59,6 +70,7 @@ public class EntityObject {
   }
 
   public void add(String field, Attribute attribute) {
+    markChanged(field);
     List<Attribute> values = attributes.computeIfAbsent(field, k -> new ArrayList<>());
     values.add(attribute);
   }
@@ -73,7 +85,38 @@ public class EntityObject {
     attributes.forEach(attribute -> add(field, attribute));
   }
 
+  /**
+   * Добавить значения поля, прочитанные из базы. Поле не отмечается измененным
+   *
+   * @param field кодовое имя поля
+   * @param attributes значения поля
+   */
+  public void addLoaded(String field, List<Attribute> attributes) {
+    this.attributes.computeIfAbsent(field, k -> new ArrayList<>()).addAll(attributes);
+  }
+
   public void setAttributes(Map<String, List<Attribute>> attributes) {
+    this.attributes.keySet().forEach(this::markChanged);
+    attributes.keySet().forEach(this::markChanged);
+    this.attributes.clear();
+    this.attributes.putAll(attributes);
+  }
+
+  /**
+   * Заменить атрибуты объекта, отметив измененными только поля, значения которых отличаются от
+   * текущих. Поля, отсутствующие в новых атрибутах, очищаются и тоже отмечаются измененными
+   *
+   * @param attributes новые атрибуты
+   */
+  public void changeAttributes(Map<String, List<Attribute>> attributes) {
+    this.attributes.keySet().stream()
+        .filter(field -> !attributes.containsKey(field))
+        .forEach(this::markChanged);
+    attributes.forEach((field, values) -> {
+      if (!sameValues(this.attributes.get(field), values)) {
+        markChanged(field);
+      }
+    });
     this.attributes.clear();
     this.attributes.putAll(attributes);
   }
@@ -177,7 +220,106 @@ public class EntityObject {
     return id <= 0;
   }
 
+  public void setName(String name) {
+    if (!Objects.equals(this.name, name)) {
+      markChanged(StandardField.NAME.getCodeName());
+    }
+    this.name = name;
+  }
+
+  public void setStatus(EntityObjectStatus status) {
+    if (this.status != status) {
+      markChanged(StandardField.STATUS.getCodeName());
+    }
+    this.status = status;
+  }
+
+  public void setParentId(Integer parentId) {
+    if (!Objects.equals(this.parentId, parentId)) {
+      markChanged(StandardField.PARENT_ID.getCodeName());
+    }
+    this.parentId = parentId;
+  }
+
   public void setAttachments(List<ObjectAttachment> attachments) {
+    markChanged(StandardField.ATTACHMENTS.getCodeName());
     this.attachments = attachments == null ? new ArrayList<>() : attachments;
   }
+
+  /**
+   * Создать копию объекта. Списки атрибутов, вложения и метаданные копируются, значения
+   * атрибутов используются те же
+   */
+  public EntityObject copy() {
+    EntityObject copy = new EntityObject(id, entityType, name);
+    copy.guid = guid;
+    copy.status = status;
+    copy.parentId = parentId;
+    copy.checkRule = checkRule;
+    if (metadata != null) {
+      copy.metadata = new Metadata();
+      copy.metadata.setCreateUser(metadata.getCreateUser());
+      copy.metadata.setCreateDate(metadata.getCreateDate());
+      copy.metadata.setChangeUser(metadata.getChangeUser());
+      copy.metadata.setChangeDate(metadata.getChangeDate());
+    } else {
+      copy.metadata = null;
+    }
+    attributes.forEach((field, values) -> copy.attributes.put(field, new ArrayList<>(values)));
+    copy.attachments = new ArrayList<>(attachments);
+    return copy;
+  }
+
+  /**
+   * Начать отслеживание изменений. После вызова {@link #isChanged(String)} возвращает
+   * {@code true} только для полей, измененных с этого момента
+   */
+  public void trackChanges() {
+    changedFields = Collections.newSetFromMap(new CaseInsensitiveMap<>());
+  }
+
+  /**
+   * Узнать, изменено ли поле. Если изменения не отслеживаются, любое поле считается измененным
+   *
+   * @param field кодовое имя поля
+   */
+  public boolean isChanged(String field) {
+    return changedFields == null || changedFields.contains(field);
+  }
+
+  /**
+   * Отметить поле измененным
+   *
+   * @param field кодовое имя поля
+   */
+  public void markChanged(String field) {
+    if (changedFields != null) {
+      changedFields.add(field);
+    }
+  }
+
+  private static boolean sameValues(List<Attribute> left, List<Attribute> right) {
+    if (left == null || right == null) {
+      return left == right;
+    }
+    if (left.size() != right.size()) {
+      return false;
+    }
+    for (int i = 0; i < left.size(); i++) {
+      if (!sameValue(left.get(i).getValue(), right.get(i).getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean sameValue(Object left, Object right) {
+    if (left instanceof Geometry && right instanceof Geometry) {
+      return Objects.equals(((Geometry) left).getGeometry(), ((Geometry) right).getGeometry());
+    }
+    if (left instanceof EntityObject && right instanceof EntityObject) {
+      return ((EntityObject) left).getId() == ((EntityObject) right).getId();
+    }
+    return Objects.equals(left, right);
+  }
 }
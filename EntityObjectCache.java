@@ -0,0 +1,377 @@
+package com.example.core.objects.cache;
+
+import com.example.core.objects.entities.EntityObject;
+import com.example.core.objects.entities.attributes.Attribute;
+import com.example.core.objects.entities.attributes.Geometry;
+import com.example.core.objects.entities.attributes.RelationAttribute;
+import com.example.core.objects.repository.EntityObjectsChangedEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+import lombok.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Кэш объектов со всеми атрибутами по id и guid.
+ *
+ * Объем кэша ограничен оценкой занимаемой объектами памяти, при превышении вытесняются давно не
+ * использованные объекты. Объекты хранятся не дольше заданного времени, чтобы изменения в базе в
+ * обход репозитория и с других узлов были видны через ограниченное время.
+ *
+ * Объекты, измененные в текущей транзакции, читаются из базы в обход кэша до ее завершения,
+ * после завершения удаляются из кэша. Объекты со связями хранят наименование и статус связанных
+ * объектов, поэтому вместе с изменением класса удаляются и все объекты, ссылающиеся на него.
+ * Значение, загруженное во время удаления, в кэш не попадает. Наружу всегда отдаются копии
+ * объектов
+ */
+@Component
+@ManagedResource(objectName = "com.example.core:type=EntityObjectCache")
+public class EntityObjectCache {
+
+  private static final Object DIRTY_KEYS = new Object();
+
+  private static final long VALUE_WEIGHT = 64;
+
+  private final long maxWeight;
+
+  private final long maxAgeMillis;
+
+  private final LinkedHashMap<ObjectKey, CachedObject> objects =
+      new LinkedHashMap<>(256, 0.75f, true);
+
+  private final Map<GuidKey, ObjectKey> guids = new HashMap<>();
+
+  /**
+   * Объекты в кэше по кодовым именам классов, на объекты которых они ссылаются
+   */
+  private final Map<String, Set<ObjectKey>> referrers = new HashMap<>();
+
+  private long weight;
+
+  private long generation;
+
+  private long hits;
+
+  private long misses;
+
+  @Autowired
+  public EntityObjectCache(
+      @org.springframework.beans.factory.annotation.Value(
+          "${objects.cache.objects.max-weight-bytes:67108864}") long maxWeight,
+      @org.springframework.beans.factory.annotation.Value(
+          "${objects.cache.objects.max-age-ms:60000}") long maxAgeMillis) {
+    this.maxWeight = maxWeight;
+    this.maxAgeMillis = maxAgeMillis;
+  }
+
+  /**
+   * Получить объект из кэша или загрузить его
+   *
+   * @param entityType кодовое имя класса объектов
+   * @param id идентификатор объекта
+   * @param loader загрузка объекта
+   * @return копия объекта
+   */
+  public Optional<EntityObject> get(String entityType, int id,
+                                    Supplier<Optional<EntityObject>> loader) {
+    ObjectKey key = new ObjectKey(entityType.toLowerCase(), id);
+    long loadGeneration;
+    synchronized (this) {
+      CachedObject cached = fresh(key);
+      if (cached != null && !isDirty(key, cached)) {
+        hits++;
+        return Optional.of(cached.object.copy());
+      }
+      misses++;
+      loadGeneration = generation;
+    }
+    return load(loader, loadGeneration);
+  }
+
+  /**
+   * Получить объект из кэша или загрузить его
+   *
+   * @param entityType кодовое имя класса объектов
+   * @param guid глобальный идентификатор объекта
+   * @param loader загрузка объекта
+   * @return копия объекта
+   */
+  public Optional<EntityObject> get(String entityType, UUID guid,
+                                    Supplier<Optional<EntityObject>> loader) {
+    GuidKey guidKey = new GuidKey(entityType.toLowerCase(), guid);
+    long loadGeneration;
+    synchronized (this) {
+      ObjectKey key = guids.get(guidKey);
+      CachedObject cached = key == null ? null : fresh(key);
+      if (cached != null && !isDirty(key, cached)) {
+        hits++;
+        return Optional.of(cached.object.copy());
+      }
+      misses++;
+      loadGeneration = generation;
+    }
+    return load(loader, loadGeneration);
+  }
+
+  /**
+   * Отметить объекты и их класс измененными в текущей транзакции
+   */
+  @EventListener
+  public void onObjectsChanging(EntityObjectsChangedEvent event) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      return;
+    }
+    DirtyObjects dirty = dirtyObjects();
+    if (dirty == null) {
+      DirtyObjects created = new DirtyObjects();
+      TransactionSynchronizationManager.bindResource(DIRTY_KEYS, created);
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+              TransactionSynchronizationManager.unbindResourceIfPossible(DIRTY_KEYS);
+            }
+          });
+      dirty = created;
+    }
+    String entityType = event.getEntityType().toLowerCase();
+    dirty.types.add(entityType);
+    for (Integer id : event.getIds()) {
+      dirty.keys.add(new ObjectKey(entityType, id));
+    }
+  }
+
+  /**
+   * Удалить измененные объекты и объекты, ссылающиеся на класс измененных объектов, после
+   * завершения транзакции
+   */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+  public synchronized void onObjectsChanged(EntityObjectsChangedEvent event) {
+    generation++;
+    String entityType = event.getEntityType().toLowerCase();
+    for (Integer id : event.getIds()) {
+      remove(new ObjectKey(entityType, id));
+    }
+    Set<ObjectKey> referring = referrers.get(entityType);
+    if (referring != null) {
+      new ArrayList<>(referring).forEach(this::remove);
+    }
+  }
+
+  @ManagedOperation(description = "Сбросить кэш объектов")
+  public synchronized void clear() {
+    generation++;
+    objects.clear();
+    guids.clear();
+    referrers.clear();
+    weight = 0;
+  }
+
+  @ManagedAttribute(description = "Попадания в кэш объектов")
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  @ManagedAttribute(description = "Промахи кэша объектов")
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  @ManagedAttribute(description = "Количество объектов в кэше")
+  public synchronized int getSize() {
+    return objects.size();
+  }
+
+  @ManagedAttribute(description = "Оценка занимаемой кэшем памяти в байтах")
+  public synchronized long getWeight() {
+    return weight;
+  }
+
+  private Optional<EntityObject> load(Supplier<Optional<EntityObject>> loader,
+                                      long loadGeneration) {
+    Optional<EntityObject> loaded = loader.get();
+    loaded.ifPresent(object -> put(object, loadGeneration));
+    return loaded;
+  }
+
+  private synchronized void put(EntityObject object, long loadGeneration) {
+    ObjectKey key = new ObjectKey(object.getEntityType().toLowerCase(), object.getId());
+    Set<String> relatedTypes = relatedTypes(object);
+    if (relatedTypes == null) {
+      return;
+    }
+    CachedObject cached = new CachedObject(object.copy(), weigh(object), relatedTypes,
+                                           System.currentTimeMillis());
+    if (loadGeneration != generation || isDirty(key, cached) || cached.weight > maxWeight) {
+      return;
+    }
+    CachedObject previous = objects.put(key, cached);
+    if (previous != null) {
+      forget(previous);
+    }
+    weight += cached.weight;
+    if (object.getGuid() != null) {
+      guids.put(new GuidKey(key.getEntityType(), object.getGuid()), key);
+    }
+    for (String relatedType : cached.relatedTypes) {
+      referrers.computeIfAbsent(relatedType, type -> new HashSet<>()).add(key);
+    }
+
+    Iterator<CachedObject> eldest = objects.values().iterator();
+    while (weight > maxWeight && eldest.hasNext()) {
+      CachedObject evicted = eldest.next();
+      eldest.remove();
+      forget(evicted);
+    }
+  }
+
+  /**
+   * Объект из кэша, если срок его хранения не истек. Устаревший объект удаляется
+   */
+  private CachedObject fresh(ObjectKey key) {
+    CachedObject cached = objects.get(key);
+    if (cached != null && System.currentTimeMillis() - cached.loadedAt > maxAgeMillis) {
+      remove(key);
+      return null;
+    }
+    return cached;
+  }
+
+  private void remove(ObjectKey key) {
+    CachedObject removed = objects.remove(key);
+    if (removed != null) {
+      forget(removed);
+    }
+  }
+
+  private void forget(CachedObject cached) {
+    weight -= cached.weight;
+    EntityObject object = cached.object;
+    String entityType = object.getEntityType().toLowerCase();
+    if (object.getGuid() != null) {
+      guids.remove(new GuidKey(entityType, object.getGuid()));
+    }
+    ObjectKey key = new ObjectKey(entityType, object.getId());
+    for (String relatedType : cached.relatedTypes) {
+      Set<ObjectKey> referring = referrers.get(relatedType);
+      if (referring != null && referring.remove(key) && referring.isEmpty()) {
+        referrers.remove(relatedType);
+      }
+    }
+  }
+
+  /**
+   * Изменен ли в текущей транзакции объект или класс объектов, на которые он ссылается
+   */
+  private static boolean isDirty(ObjectKey key, CachedObject cached) {
+    DirtyObjects dirty = dirtyObjects();
+    return dirty != null && (dirty.keys.contains(key)
+        || cached.relatedTypes.stream().anyMatch(dirty.types::contains));
+  }
+
+  private static DirtyObjects dirtyObjects() {
+    return (DirtyObjects) TransactionSynchronizationManager.getResource(DIRTY_KEYS);
+  }
+
+  /**
+   * Кодовые имена классов объектов, на которые ссылается объект, или null, если класс связанного
+   * объекта неизвестен и сбросить объект при его изменении нельзя
+   */
+  private static Set<String> relatedTypes(EntityObject object) {
+    Set<String> types = new HashSet<>();
+    for (List<Attribute> values : object.getAttributes().values()) {
+      for (Attribute attribute : values) {
+        Object value = attribute.getValue();
+        if (attribute instanceof RelationAttribute && value instanceof EntityObject) {
+          String relatedType = ((EntityObject) value).getEntityType();
+          if (relatedType == null) {
+            return null;
+          }
+          types.add(relatedType.toLowerCase());
+        }
+      }
+    }
+    return types;
+  }
+
+  /**
+   * Оценить занимаемую объектом память
+   */
+  private static long weigh(EntityObject object) {
+    long result = VALUE_WEIGHT * (4 + object.getAttachments().size());
+    for (List<Attribute> values : object.getAttributes().values()) {
+      for (Attribute attribute : values) {
+        Object value = attribute.getValue();
+        result += VALUE_WEIGHT;
+        if (value instanceof String) {
+          result += 2L * ((String) value).length();
+        } else if (value instanceof Geometry && ((Geometry) value).getGeometry() != null) {
+          result += 2L * ((Geometry) value).getGeometry().length();
+        }
+      }
+    }
+    return result;
+  }
+
+  @Value
+  private static class ObjectKey {
+
+    String entityType;
+
+    int id;
+  }
+
+  @Value
+  private static class GuidKey {
+
+    String entityType;
+
+    UUID guid;
+  }
+
+  private static final class CachedObject {
+
+    private final EntityObject object;
+
+    private final long weight;
+
+    private final Set<String> relatedTypes;
+
+    private final long loadedAt;
+
+    private CachedObject(EntityObject object, long weight, Set<String> relatedTypes,
+                         long loadedAt) {
+      this.object = object;
+      this.weight = weight;
+      this.relatedTypes = relatedTypes;
+      this.loadedAt = loadedAt;
+    }
+  }
+
+  /**
+   * Объекты и классы объектов, измененные в текущей транзакции
+   */
+  private static final class DirtyObjects {
+
+    private final Set<ObjectKey> keys = new HashSet<>();
+
+    private final Set<String> types = new HashSet<>();
+  }
+}
@@ -2,13 +2,16 @@ package com.example.core.objects.api;
 
 import static com.example.common.rest.ApiUtils.JSON_TYPE;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.example.core.common.Filter;
+import com.example.core.layers.entities.Extent;
 import com.example.common.rest.CountResponse;
 import com.example.core.model.EntityTypeManager;
 import com.example.core.model.entities.EntityType;
 import com.example.core.objects.EntityObjectManager;
 import com.example.core.objects.ObjectResponse;
-import com.example.core.objects.api.dto.EntityObjectDTO;
+import com.example.core.objects.api.EntityObjectExportWriter.ExportFormat;
+import com.example.core.objects.api.dto.BatchGetRequest;
 import com.example.core.objects.api.dto.EntityReference;
 import com.example.core.objects.api.dto.ObjectAttachment;
 import com.example.core.objects.calculator.EntityCalculatorManager;
@@ -16,21 +19,29 @@ import com.example.core.objects.calculator.log.CalculatorTaskManager;
 import com.example.core.objects.calculator.log.entity.CalculatorTask;
 import com.example.core.objects.calculator.log.entity.CalculatorTaskLog;
 import com.example.core.objects.calculator.log.entity.CalculatorTaskLogFilter;
+import com.example.core.objects.entities.CursorPage;
 import com.example.core.objects.entities.EntityObject;
 import com.example.core.objects.entities.EntityObjectFilter;
+import com.example.core.objects.entities.ObjectBatch;
+import com.example.core.objects.entities.ObjectQueryOptions;
 import com.example.core.objects.entities.SearchRecord;
+import com.example.core.objects.entities.UniqueValuesFilter;
 import com.example.storage.api.StorageFile;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -44,6 +55,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /**
  * Контроллер для объектов {@link com.example.core.objects.entities.EntityObject}
@@ -52,6 +64,8 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping(path = "/registers/{register}/model/{entityType}/objects", produces = JSON_TYPE)
 public class EntityObjectController {
 
+  private static final String MVT_TYPE = "application/vnd.mapbox-vector-tile";
+
   private final EntityObjectManager manager;
 
   private final EntityTypeManager etManager;
@@ -60,75 +74,160 @@ public class EntityObjectController {
 
   private final CalculatorTaskManager taskManager;
 
+  private final ObjectMapper objectMapper;
+
   @Autowired
   public EntityObjectController(EntityObjectManager manager, EntityTypeManager etManager,
                                 EntityCalculatorManager calcManager,
-                                CalculatorTaskManager taskManager) {
+                                CalculatorTaskManager taskManager,
+                                ObjectMapper objectMapper) {
     this.manager = manager;
     this.etManager = etManager;
     this.calcManager = calcManager;
     this.taskManager = taskManager;
+    this.objectMapper = objectMapper;
   }
 
   @GetMapping
-  public Page<EntityObjectDTO> findObjectsWithFilter(@PathVariable("register") String register,
-                                                     @PathVariable("entityType") String entityType,
-                                                     EntityObjectFilter filter) {
+  public Page<EntityObjectJson> findObjectsWithFilter(@PathVariable("register") String register,
+                                                      @PathVariable("entityType") String entityType,
+                                                      EntityObjectFilter filter,
+                                                      ObjectQueryOptions options) {
     EntityType type = etManager.find(register, entityType);
-    Page<EntityObject> objects = manager.findObjectsWithFilter(register, type, filter);
+    Page<EntityObject> objects = manager.findObjectsWithFilter(register, type, filter, options);
     if (filter.getCalculateAttribute() != null && filter.getCalculateAttribute().length != 0) {
       objects = calcManager.calculate(objects, type, filter);
     }
-    return objects.map(object -> EntityObjectMapper.map(type, object));
+    return objects.map(object -> EntityObjectJson.of(type, object));
+  }
+
+  @GetMapping("cursor")
+  public CursorPage<EntityObjectJson> findObjectsAfter(@PathVariable("register") String register,
+                                                       @PathVariable("entityType") String entityType,
+                                                       @RequestParam(value = "cursor",
+                                                           required = false) String cursor,
+                                                       EntityObjectFilter filter,
+                                                       ObjectQueryOptions options) {
+    EntityType type = etManager.find(register, entityType);
+    CursorPage<EntityObject> page = manager.findObjectsAfter(register, type, filter, cursor,
+                                                             options);
+    List<EntityObject> objects = page.getContent();
+    if (filter.getCalculateAttribute() != null && filter.getCalculateAttribute().length != 0) {
+      objects = calcManager.calculate(new PageImpl<>(objects), type, filter).getContent();
+    }
+    return new CursorPage<>(objects, page.getCursor()).map(o -> EntityObjectJson.of(type, o));
+  }
+
+  @GetMapping(value = "stream", produces = {EntityObjectExportWriter.NDJSON_TYPE,
+      EntityObjectExportWriter.GEOJSON_TYPE, JSON_TYPE})
+  public void exportObjects(@PathVariable("register") String register,
+                            @PathVariable("entityType") String entityType,
+                            @RequestParam(value = "format", defaultValue = "NDJSON")
+                                ExportFormat format,
+                            EntityObjectFilter filter,
+                            ObjectQueryOptions options,
+                            HttpServletResponse response) throws IOException {
+    EntityType type = etManager.find(register, entityType);
+    response.setContentType(format.getContentType());
+    try (EntityObjectExportWriter writer = new EntityObjectExportWriter(
+        objectMapper, type, format, response.getOutputStream())) {
+      manager.exportObjects(register, type, filter, options, writer::write);
+    }
   }
 
   @GetMapping("count")
   public CountResponse countObjects(@PathVariable("register") String register,
                                     @PathVariable("entityType") String entityType,
-                                    EntityObjectFilter filter) {
-    return CountResponse.of(manager.count(register, entityType, filter));
+                                    EntityObjectFilter filter,
+                                    ObjectQueryOptions options) {
+    return CountResponse.of(manager.count(register, entityType, filter, options));
+  }
+
+  @GetMapping("extent")
+  public Extent findExtent(@PathVariable("register") String register,
+                           @PathVariable("entityType") String entityType,
+                           @RequestParam(value = "field", required = false) String field,
+                           EntityObjectFilter filter,
+                           ObjectQueryOptions options) {
+    EntityType type = etManager.find(register, entityType);
+    return manager.findExtent(register, type, field, filter, options);
+  }
+
+  @GetMapping(value = "tiles/{z:\\d+}/{x:\\d+}/{y:\\d+}.mvt", produces = MVT_TYPE)
+  public ResponseEntity<byte[]> findTile(@PathVariable("register") String register,
+                                         @PathVariable("entityType") String entityType,
+                                         @PathVariable("z") int z,
+                                         @PathVariable("x") int x,
+                                         @PathVariable("y") int y,
+                                         @RequestParam(value = "field", required = false)
+                                             String field,
+                                         @RequestParam(value = "properties", required = false)
+                                             List<String> properties) {
+    EntityType type = etManager.find(register, entityType);
+    byte[] tile = manager.findTile(register, type, field, properties, z, x, y);
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(MVT_TYPE))
+        .contentLength(tile.length)
+        .body(tile);
   }
 
   @GetMapping("{guid:[a-fA-F0-9]{8}-[a-fA-F0-9]{4}-[a-fA-F0-9]{4}-[a-fA-F0-9]{4}-[a-fA-F0-9]{12}}")
-  public EntityObjectDTO findWithGuid(@PathVariable("register") String register,
-                                      @PathVariable("entityType") String entityType,
-                                      @PathVariable("guid") UUID guid) {
+  public EntityObjectJson findWithGuid(@PathVariable("register") String register,
+                                       @PathVariable("entityType") String entityType,
+                                       @PathVariable("guid") UUID guid) {
     ObjectResponse response = manager.find(register, entityType, guid);
-    return EntityObjectMapper.map(response.getEntityType(), response.getObject());
+    return EntityObjectJson.of(response.getEntityType(), response.getObject());
   }
 
   @GetMapping("{id:\\d+}")
-  public EntityObjectDTO find(@PathVariable("register") String register,
-                              @PathVariable("entityType") String entityType,
-                              @PathVariable("id") int id) {
+  public EntityObjectJson find(@PathVariable("register") String register,
+                               @PathVariable("entityType") String entityType,
+                               @PathVariable("id") int id) {
     ObjectResponse response = manager.find(register, entityType, id);
-    return EntityObjectMapper.map(response.getEntityType(), response.getObject());
+    return EntityObjectJson.of(response.getEntityType(), response.getObject());
+  }
+
+  @PostMapping("batch-get")
+  public ObjectBatch<EntityObjectJson> findObjects(@PathVariable("register") String register,
+                                                   @PathVariable("entityType") String entityType,
+                                                   @RequestBody BatchGetRequest request) {
+    EntityType type = etManager.find(register, entityType);
+    return manager.findAll(register, type, request).map(o -> EntityObjectJson.of(type, o));
   }
 
   @GetMapping("/param")
   public List<String> findFilterValues(@PathVariable("register") String register,
                                        @PathVariable("entityType") String entityType,
-                                       @RequestParam("filter") String filter) {
+                                       @RequestParam("filter") String filter,
+                                       UniqueValuesFilter valuesFilter) {
     EntityType type = etManager.find(register, entityType);
-    return manager.findFilterValues(register, type, filter);
+    return manager.findFilterValues(register, type, filter, valuesFilter);
   }
 
+  /**
+   * Файл вложения. Условный запрос по ETag (md5 файла) и запрос диапазона (Range) обрабатывает
+   * Spring: для {@link Resource} отдаются 304, 206 и 416
+   */
   @GetMapping("{id}/attachments/{guid}")
   public ResponseEntity<Resource> findObjectAttachment(@PathVariable("register") String register,
                                                        @PathVariable("entityType") String codeName,
                                                        @PathVariable("id") int id,
-                                                       @PathVariable("guid") String guid)
-      throws IOException {
-    ObjectResponse response = manager.find(register, codeName, id);
-    File file = manager.getObjectAttachmentFile(response, guid);
-    StorageFile storageFile = manager.getAttachmentFileMetadata(guid);
+                                                       @PathVariable("guid") String guid,
+                                                       WebRequest request) {
+    ObjectAttachment attachment = manager.findAttachment(register, codeName, id, guid);
+    if (StringUtils.isNotBlank(attachment.getMd5())
+        && request.checkNotModified("\"" + attachment.getMd5() + "\"")) {
+      return null;
+    }
 
-    InputStreamResource resource = new InputStreamResource(new FileInputStream(file));
+    StorageFile metadata = manager.getAttachmentFileMetadata(guid);
+    MediaType contentType = StringUtils.isBlank(metadata.getContentType())
+        ? MediaType.APPLICATION_OCTET_STREAM : MediaType.parseMediaType(metadata.getContentType());
+    String name = StringUtils.defaultIfBlank(attachment.getName(), guid);
     return ResponseEntity.ok()
-        .contentLength(file.length())
-        .contentType(MediaType.parseMediaType(storageFile.getContentType()))
-        .header("Content-Disposition", "attachment; filename=\"" + storageFile.getName() + "\"")
-        .body(resource);
+        .contentType(contentType)
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + name + "\"")
+        .body(new FileSystemResource(manager.getAttachmentFile(guid)));
   }
 
   @GetMapping("{id}/attachments/{guid}/info")
@@ -157,33 +256,55 @@ public class EntityObjectController {
   }
 
   @PostMapping("/filter")
-  public Page<EntityObjectDTO> findObjectsWithFilterPost(@PathVariable("register") String register,
-                                                         @PathVariable("entityType") String entityType,
-                                                         @RequestBody EntityObjectFilter filter) {
+  public Page<EntityObjectJson> findObjectsWithFilterPost(@PathVariable("register") String register,
+                                                          @PathVariable("entityType") String entityType,
+                                                          @RequestBody EntityObjectFilter filter) {
     EntityType type = etManager.find(register, entityType);
     Page<EntityObject> objects = manager.findObjectsWithFilter(register, type, filter);
-    return objects.map(object -> EntityObjectMapper.map(type, object));
+    return objects.map(object -> EntityObjectJson.of(type, object));
   }
 
   @PostMapping
   @ResponseStatus(HttpStatus.CREATED)
   public EntityReference create(@PathVariable("register") String register,
                                 @PathVariable("entityType") String codeName,
-                                @RequestBody String json) {
+                                InputStream body) {
     EntityType entityType = etManager.find(register, codeName);
-    EntityObject object = EntityObjectMapper.mapFromJson(entityType, json);
+    EntityObject object = EntityObjectJsonReader.read(entityType, body);
     EntityObject saved = manager.createObject(register, codeName, object);
     return EntityObjectMapper.mapReference(saved);
   }
 
+  @PostMapping("batch")
+  @ResponseStatus(HttpStatus.CREATED)
+  public List<EntityReference> createAll(@PathVariable("register") String register,
+                                         @PathVariable("entityType") String codeName,
+                                         InputStream body) {
+    EntityType entityType = etManager.find(register, codeName);
+    List<EntityObject> objects = EntityObjectJsonReader.readList(entityType, body);
+    return manager.createObjects(register, codeName, objects).stream()
+        .map(EntityObjectMapper::mapReference)
+        .collect(Collectors.toList());
+  }
+
+  @PostMapping("import")
+  public CountResponse importAll(@PathVariable("register") String register,
+                                 @PathVariable("entityType") String codeName,
+                                 InputStream body) {
+    EntityType entityType = etManager.find(register, codeName);
+    int imported = manager.importObjects(register, codeName, consumer ->
+        EntityObjectJsonReader.readEach(entityType, body, consumer));
+    return CountResponse.of(imported);
+  }
+
   @PatchMapping("{id}")
   @ResponseStatus(HttpStatus.NO_CONTENT)
   public void update(@PathVariable("register") String register,
                      @PathVariable("entityType") String codeName,
                      @PathVariable("id") int id,
-                     @RequestBody String json) {
+                     InputStream body) {
     EntityType entityType = etManager.find(register, codeName);
-    EntityObject object = EntityObjectMapper.mapFromJson(entityType, json);
+    EntityObject object = EntityObjectJsonReader.read(entityType, body);
     object.setId(id);
     manager.updateObject(register, codeName, object);
   }
@@ -0,0 +1,110 @@
+package com.example.core.objects.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.common.exceptions.UnprocessableException;
+import com.example.core.model.CompiledEntityType;
+import com.example.core.model.entities.EntityType;
+import com.example.core.model.entities.fields.BaseField;
+import com.example.core.objects.api.dto.EntityObjectDTO;
+import com.example.core.objects.entities.EntityObject;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Потоковая запись объектов {@link EntityObject} при выгрузке.
+ *
+ * Каждый объект пишется сразу в выходной поток, поэтому расход памяти не зависит от количества
+ * выгружаемых объектов
+ */
+final class EntityObjectExportWriter implements Closeable {
+
+  static final String NDJSON_TYPE = "application/x-ndjson";
+
+  static final String GEOJSON_TYPE = "application/geo+json";
+
+  /**
+   * Формат выгрузки
+   */
+  enum ExportFormat {
+    /**
+     * По одному {@link EntityObjectDTO} на строку
+     */
+    NDJSON(NDJSON_TYPE),
+    /**
+     * GeoJSON FeatureCollection по первому геометрическому полю класса
+     */
+    GEOJSON(GEOJSON_TYPE);
+
+    @Getter
+    private final String contentType;
+
+    ExportFormat(String contentType) {
+      this.contentType = contentType;
+    }
+  }
+
+  private final EntityType entityType;
+
+  private final ExportFormat format;
+
+  private final BaseField geometryField;
+
+  private final JsonGenerator generator;
+
+  EntityObjectExportWriter(@NonNull ObjectMapper objectMapper,
+                           @NonNull EntityType entityType,
+                           @NonNull ExportFormat format,
+                           @NonNull OutputStream out) throws IOException {
+    this.entityType = entityType;
+    this.format = format;
+    this.geometryField = format == ExportFormat.GEOJSON ? findGeometryField(entityType) : null;
+    this.generator = objectMapper.getFactory().createGenerator(out);
+    this.generator.setRootValueSeparator(null);
+    if (format == ExportFormat.GEOJSON) {
+      generator.writeStartObject();
+      generator.writeStringField("type", "FeatureCollection");
+      generator.writeArrayFieldStart("features");
+    }
+  }
+
+  /**
+   * Записать объект
+   *
+   * @param object объект
+   * @throws UncheckedIOException ошибка записи в поток
+   */
+  void write(EntityObject object) {
+    try {
+      if (format == ExportFormat.GEOJSON) {
+        generator.writeObject(EntityObjectFeatureJson.of(entityType, geometryField, object));
+      } else {
+        generator.writeObject(EntityObjectJson.of(entityType, object));
+        generator.writeRaw('\n');
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (format == ExportFormat.GEOJSON) {
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+    generator.close();
+  }
+
+  private static BaseField findGeometryField(EntityType entityType) {
+    return CompiledEntityType.of(entityType).getGeometryFields().stream()
+        .filter(f -> !f.isMultiple())
+        .findFirst()
+        .orElseThrow(() -> new UnprocessableException(
+            "Entity type " + entityType.getCodeName() + " has no geometry field"));
+  }
+}
@@ -0,0 +1,31 @@
+package com.example.core.objects.api;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.example.core.model.entities.EntityType;
+import com.example.core.model.entities.fields.BaseField;
+import com.example.core.objects.entities.EntityObject;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Объект {@link EntityObject} вместе с классом и геометрическим полем для записи в виде
+ * GeoJSON Feature.
+ *
+ * Сериализуется {@link EntityObjectFeatureJsonSerializer} напрямую, без построения dto
+ */
+@Getter
+@AllArgsConstructor(staticName = "of")
+@JsonSerialize(using = EntityObjectFeatureJsonSerializer.class)
+public class EntityObjectFeatureJson {
+
+  @NonNull
+  private final EntityType entityType;
+
+  @NonNull
+  private final BaseField geometryField;
+
+  @NonNull
+  private final EntityObject object;
+
+}
@@ -0,0 +1,50 @@
+package com.example.core.objects.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.example.core.objects.entities.EntityObject;
+import com.example.core.objects.entities.attributes.Attribute;
+import com.example.core.objects.entities.attributes.Geometry;
+import com.example.core.objects.entities.attributes.Geometry.Type;
+import java.io.IOException;
+
+/**
+ * Сериализатор {@link EntityObjectFeatureJson} в GeoJSON Feature.
+ *
+ * Геометрия пишется из значения геометрического поля, остальные атрибуты - в properties в
+ * порядке полей класса, как в {@link EntityObjectJsonSerializer}
+ */
+public class EntityObjectFeatureJsonSerializer extends JsonSerializer<EntityObjectFeatureJson> {
+
+  @Override
+  public void serialize(EntityObjectFeatureJson value, JsonGenerator gen,
+                        SerializerProvider provider) throws IOException {
+    EntityObject object = value.getObject();
+    String geometryField = value.getGeometryField().getCodeName();
+    gen.writeStartObject();
+    gen.writeStringField("type", "Feature");
+    gen.writeNumberField("id", object.getId());
+    gen.writeFieldName("geometry");
+    writeGeometry(object, geometryField, gen);
+    gen.writeFieldName("properties");
+    EntityObjectJsonSerializer.writeAttributes(value.getEntityType(), object, geometryField, gen,
+                                               provider);
+    gen.writeEndObject();
+  }
+
+  private static void writeGeometry(EntityObject object, String geometryField,
+                                    JsonGenerator gen) throws IOException {
+    Geometry geometry = object.getSingle(geometryField)
+        .map(Attribute::getValue)
+        .map(Geometry.class::cast)
+        .orElse(null);
+    if (geometry == null || geometry.getGeometry() == null) {
+      gen.writeNull();
+    } else if (geometry.getType() == Type.WKT) {
+      gen.writeString(geometry.getGeometry());
+    } else {
+      gen.writeRawValue(geometry.getGeometry());
+    }
+  }
+}
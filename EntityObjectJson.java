@@ -0,0 +1,28 @@
+package com.example.core.objects.api;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.example.core.model.entities.EntityType;
+import com.example.core.objects.api.dto.EntityObjectDTO;
+import com.example.core.objects.entities.EntityObject;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Объект {@link EntityObject} вместе с классом для записи в ответ.
+ *
+ * Сериализуется {@link EntityObjectJsonSerializer} сразу в формате {@link EntityObjectDTO}, без
+ * построения промежуточного dto и карты атрибутов
+ */
+@Getter
+@AllArgsConstructor(staticName = "of")
+@JsonSerialize(using = EntityObjectJsonSerializer.class)
+public class EntityObjectJson {
+
+  @NonNull
+  private final EntityType entityType;
+
+  @NonNull
+  private final EntityObject object;
+
+}
@@ -0,0 +1,274 @@
+package com.example.core.objects.api;
+
+import static com.example.core.common.Status.CREATE;
+import static com.example.core.common.Status.DELETE;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.example.common.exceptions.UnprocessableException;
+import com.example.common.time.DateTimeUtils;
+import com.example.core.common.Status;
+import com.example.core.model.CompiledEntityType;
+import com.example.core.model.entities.EntityType;
+import com.example.core.model.entities.FieldType;
+import com.example.core.model.entities.fields.BaseField;
+import com.example.core.objects.AttributeFactory;
+import com.example.core.objects.api.dto.ObjectAttachment;
+import com.example.core.objects.entities.EntityObject;
+import com.example.core.objects.entities.EntityObjectStatus;
+import com.example.core.objects.entities.attributes.Attribute;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import lombok.NonNull;
+
+/**
+ * Потоковое чтение {@link EntityObject} из json.
+ *
+ * В отличие от {@link EntityObjectMapper#mapFromJson(EntityType, String)} не строит ни строку
+ * запроса, ни дерево {@code JsonNode}: атрибуты создаются через {@link AttributeFactory} по мере
+ * чтения токенов, поля класса ищутся в {@link CompiledEntityType}
+ */
+public final class EntityObjectJsonReader {
+
+  private static final JsonFactory FACTORY = new JsonFactory();
+
+  private final CompiledEntityType compiled;
+
+  private EntityObjectJsonReader(EntityType entityType) {
+    compiled = CompiledEntityType.of(entityType);
+  }
+
+  /**
+   * Прочитать объект
+   *
+   * @param entityType класс объектов
+   * @param json поток с json-объектом
+   * @return прочитанный {@link EntityObject}
+   * @throws UnprocessableException невалидный json
+   */
+  public static EntityObject read(@NonNull EntityType entityType, @NonNull InputStream json) {
+    EntityObjectJsonReader reader = new EntityObjectJsonReader(entityType);
+    try (JsonParser parser = FACTORY.createParser(json)) {
+      if (parser.nextToken() == null) {
+        throw new UnprocessableException("object json is blank");
+      }
+      return reader.readObject(parser);
+    } catch (IOException e) {
+      throw new UnprocessableException("Failed to parse object", e);
+    }
+  }
+
+  /**
+   * Прочитать список объектов
+   *
+   * @param entityType класс объектов
+   * @param json поток с json-массивом объектов
+   * @return прочитанные {@link EntityObject}
+   * @throws UnprocessableException невалидный json
+   */
+  public static List<EntityObject> readList(@NonNull EntityType entityType,
+                                            @NonNull InputStream json) {
+    List<EntityObject> objects = new ArrayList<>();
+    readEach(entityType, json, objects::add);
+    return objects;
+  }
+
+  /**
+   * Прочитать массив объектов, передавая каждый объект обработчику сразу после чтения. Массив
+   * целиком в памяти не хранится
+   *
+   * @param entityType класс объектов
+   * @param json поток с json-массивом объектов
+   * @param consumer обработчик объектов
+   * @throws UnprocessableException невалидный json
+   */
+  public static void readEach(@NonNull EntityType entityType, @NonNull InputStream json,
+                              @NonNull Consumer<EntityObject> consumer) {
+    EntityObjectJsonReader reader = new EntityObjectJsonReader(entityType);
+    try (JsonParser parser = FACTORY.createParser(json)) {
+      if (parser.nextToken() != JsonToken.START_ARRAY) {
+        throw new UnprocessableException("Objects json is not an array");
+      }
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        consumer.accept(reader.readObject(parser));
+      }
+    } catch (IOException e) {
+      throw new UnprocessableException("Failed to parse objects", e);
+    }
+  }
+
+  private EntityObject readObject(JsonParser parser) throws IOException {
+    requireToken(parser, JsonToken.START_OBJECT);
+    EntityObject object = new EntityObject();
+    List<ObjectAttachment> attachments = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      parser.nextToken();
+      if ("attributes".equals(name)) {
+        readAttributes(parser, object);
+      } else if ("attachments".equals(name)) {
+        attachments = readAttachments(parser);
+      } else {
+        readBaseField(parser, name, object);
+      }
+    }
+    object.setAttachments(attachments);
+    return object;
+  }
+
+  private static EntityObject readBaseObject(JsonParser parser) throws IOException {
+    requireToken(parser, JsonToken.START_OBJECT);
+    EntityObject object = new EntityObject();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      parser.nextToken();
+      readBaseField(parser, name, object);
+    }
+    return object;
+  }
+
+  private static void readBaseField(JsonParser parser, String name, EntityObject object)
+      throws IOException {
+    switch (name) {
+      case "id":
+        object.setId(parser.getValueAsInt(0));
+        break;
+      case "name":
+        object.setName(parser.getValueAsString());
+        break;
+      case "entityType":
+        object.setEntityType(parser.getValueAsString());
+        break;
+      case "status":
+        object.setStatus(EntityObjectStatus.values()[parser.getValueAsInt(0)]);
+        break;
+      default:
+        parser.skipChildren();
+    }
+  }
+
+  private void readAttributes(JsonParser parser, EntityObject object) throws IOException {
+    if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return;
+    }
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      BaseField field = compiled.baseField(parser.getCurrentName()).orElse(null);
+      parser.nextToken();
+      if (field == null) {
+        parser.skipChildren();
+      } else if (field.isMultiple()) {
+        object.add(field.getCodeName(), readMultipleAttribute(parser, field));
+      } else {
+        object.add(field.getCodeName(), readSingleAttribute(parser, field));
+      }
+    }
+  }
+
+  private static List<Attribute> readMultipleAttribute(JsonParser parser, BaseField field)
+      throws IOException {
+    if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return Collections.emptyList();
+    }
+    List<Attribute> result = new ArrayList<>();
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      result.add(readSingleAttribute(parser, field));
+    }
+    return result;
+  }
+
+  private static Attribute readSingleAttribute(JsonParser parser, BaseField field)
+      throws IOException {
+    return AttributeFactory.create(field.getFieldType(), readSingleValue(parser, field));
+  }
+
+  private static Object readSingleValue(JsonParser parser, BaseField field) throws IOException {
+    if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    FieldType fieldType = field.getFieldType();
+    if (fieldType == FieldType.RELATION) {
+      return readBaseObject(parser);
+    }
+    if (parser.getCurrentToken().isStructStart()) {
+      parser.skipChildren();
+      return "";
+    }
+    if (fieldType == FieldType.NUMERIC) {
+      return parser.getValueAsDouble();
+    } else if (fieldType == FieldType.DATE) {
+      return LocalDate.parse(parser.getText());
+    } else if (fieldType == FieldType.TIME) {
+      return LocalTime.parse(parser.getText());
+    } else if (fieldType == FieldType.DATE_TIME) {
+      return LocalDateTime.parse(parser.getText());
+    } else if (fieldType == FieldType.BOOLEAN) {
+      return parser.getValueAsBoolean();
+    } else {
+      return parser.getValueAsString();
+    }
+  }
+
+  private static List<ObjectAttachment> readAttachments(JsonParser parser) throws IOException {
+    if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    requireToken(parser, JsonToken.START_ARRAY);
+    List<ObjectAttachment> list = new ArrayList<>();
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      requireToken(parser, JsonToken.START_OBJECT);
+      String status = null;
+      String guid = null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        parser.nextToken();
+        if ("status".equals(name)) {
+          status = parser.getValueAsString();
+        } else if ("guid".equals(name)) {
+          guid = parser.getValueAsString();
+        } else {
+          parser.skipChildren();
+        }
+      }
+      ObjectAttachment attachment = readAttachment(status, guid);
+      if (attachment != null) {
+        list.add(attachment);
+      }
+    }
+    return list;
+  }
+
+  private static ObjectAttachment readAttachment(String statusName, String guid) {
+    Status status;
+    try {
+      status = Status.valueOf(statusName);
+    } catch (RuntimeException e) {
+      throw new UnprocessableException("Failed to parse json object attachments", e);
+    }
+    if (status != CREATE && status != DELETE) {
+      return null;
+    }
+    ObjectAttachment attachment = new ObjectAttachment();
+    attachment.setCreateDate(Timestamp.valueOf(DateTimeUtils.now()).toString());
+    attachment.setGuid(guid);
+    attachment.setStatus(status);
+    return attachment;
+  }
+
+  private static void requireToken(JsonParser parser, JsonToken expected) {
+    if (parser.getCurrentToken() != expected) {
+      throw new UnprocessableException(
+          "Unexpected json token " + parser.getCurrentToken() + ", expected " + expected);
+    }
+  }
+}
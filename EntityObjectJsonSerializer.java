@@ -0,0 +1,106 @@
+package com.example.core.objects.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.example.core.common.Metadata;
+import com.example.core.model.entities.EntityType;
+import com.example.core.model.entities.FieldType;
+import com.example.core.model.entities.fields.BaseField;
+import com.example.core.objects.api.dto.EntityObjectDTO;
+import com.example.core.objects.entities.EntityObject;
+import com.example.core.objects.entities.attributes.Attribute;
+import com.example.core.objects.entities.attributes.Geometry;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Сериализатор {@link EntityObjectJson} в формате {@link EntityObjectDTO}.
+ *
+ * Атрибуты пишутся в порядке полей класса объектов напрямую в {@link JsonGenerator}
+ */
+public class EntityObjectJsonSerializer extends JsonSerializer<EntityObjectJson> {
+
+  @Override
+  public void serialize(EntityObjectJson value, JsonGenerator gen, SerializerProvider provider)
+      throws IOException {
+    EntityObject object = value.getObject();
+    gen.writeStartObject();
+    gen.writeNumberField("id", object.getId());
+    gen.writeStringField("name", object.getName());
+    gen.writeStringField("guid", object.getGuid() == null ? null : object.getGuid().toString());
+    gen.writeStringField("entityType", object.getEntityType());
+    gen.writeFieldName("parentId");
+    if (object.getParentId() == null) {
+      gen.writeNull();
+    } else {
+      gen.writeNumber(object.getParentId());
+    }
+    gen.writeFieldName("metadata");
+    writeMetadata(object.getMetadata(), gen, provider);
+    gen.writeNumberField("status", object.getStatus().ordinal());
+    gen.writeFieldName("attributes");
+    writeAttributes(value.getEntityType(), object, null, gen, provider);
+    provider.defaultSerializeField("attachments", object.getAttachments(), gen);
+    gen.writeEndObject();
+  }
+
+  /**
+   * Записать метаданные в формате {@link com.example.core.common.rest.MetadataDTO}. Даты пишутся
+   * сериализаторами Jackson, как в DTO
+   */
+  private void writeMetadata(Metadata metadata, JsonGenerator gen, SerializerProvider provider)
+      throws IOException {
+    if (metadata == null) {
+      gen.writeNull();
+      return;
+    }
+    gen.writeStartObject();
+    gen.writeStringField("createUser", metadata.getCreateUser());
+    provider.defaultSerializeField("createDate", metadata.getCreateDate(), gen);
+    gen.writeStringField("changeUser", metadata.getChangeUser());
+    provider.defaultSerializeField("changeDate", metadata.getChangeDate(), gen);
+    gen.writeEndObject();
+  }
+
+  /**
+   * Записать атрибуты объекта в порядке полей класса
+   *
+   * @param skipField кодовое имя поля, которое не пишется, или {@code null}
+   */
+  static void writeAttributes(EntityType entityType, EntityObject object, String skipField,
+                              JsonGenerator gen, SerializerProvider provider) throws IOException {
+    gen.writeStartObject();
+    for (BaseField field : entityType.getFields()) {
+      List<Attribute> attributes = object.getAttributes().get(field.getCodeName());
+      if (attributes == null || field.getCodeName().equals(skipField)) {
+        continue;
+      }
+      gen.writeFieldName(field.getCodeName());
+      if (field.isMultiple()) {
+        gen.writeStartArray();
+        for (Attribute attribute : attributes) {
+          writeValue(field, attribute.getValue(), gen, provider);
+        }
+        gen.writeEndArray();
+      } else {
+        Object single = attributes.isEmpty() ? null : attributes.get(0).getValue();
+        writeValue(field, single, gen, provider);
+      }
+    }
+    gen.writeEndObject();
+  }
+
+  private static void writeValue(BaseField field, Object value, JsonGenerator gen,
+                          SerializerProvider provider) throws IOException {
+    if (value == null) {
+      gen.writeNull();
+    } else if (field.getFieldType() == FieldType.RELATION) {
+      provider.defaultSerializeValue(EntityObjectMapper.mapReference((EntityObject) value), gen);
+    } else if (field.getFieldType() == FieldType.GEOMETRY) {
+      gen.writeString(((Geometry) value).getGeometry());
+    } else {
+      provider.defaultSerializeValue(value, gen);
+    }
+  }
+}
@@ -7,41 +7,65 @@ import static com.example.core.objects.entities.EntityObjectStatus.INACTIVE;
 import static com.example.core.registers.entities.Register.ADMIN_CODE_NAME;
 
 import com.example.common.context.RequestContext;
+import com.example.common.exceptions.UnprocessableException;
 import com.example.core.common.Metadata;
 import com.example.core.common.Status;
 import com.example.core.common.db.query.select.CqlFilterCondition;
 import com.example.core.common.storage.StorageBuckets;
+import com.example.core.layers.entities.Extent;
 import com.example.core.limitations.FilesUpdate;
 import com.example.core.limitations.LicenseLimitsValidator;
 import com.example.core.limitations.LimitKey;
 import com.example.core.limitations.LimitsCounter;
+import com.example.core.model.CompiledEntityType;
 import com.example.core.model.EntityTypeManager;
 import com.example.core.model.EntityUtils;
 import com.example.core.model.entities.EntityType;
 import com.example.core.model.entities.Field;
+import com.example.core.model.entities.FieldType;
+import com.example.core.model.entities.StandardField;
 import com.example.core.model.entities.fields.BaseField;
+import com.example.core.model.entities.fields.GeometryField;
+import com.example.core.model.entities.fields.RelationField;
 import com.example.core.model.exceptions.EntityTypeNotFoundException;
+import com.example.core.model.exceptions.FieldNotFoundException;
+import com.example.core.objects.api.dto.BatchGetRequest;
 import com.example.core.objects.api.dto.ObjectAttachment;
+import com.example.core.objects.cache.EntityObjectQueryCaches;
+import com.example.core.objects.cache.EntityObjectTileCache;
+import com.example.core.objects.entities.CursorPage;
 import com.example.core.objects.entities.EntityObject;
 import com.example.core.objects.entities.EntityObjectFilter;
 import com.example.core.objects.entities.EntityObjectStatus;
+import com.example.core.objects.entities.ObjectBatch;
+import com.example.core.objects.entities.ObjectQueryOptions;
 import com.example.core.objects.entities.SearchRecord;
+import com.example.core.objects.entities.UniqueValuesFilter;
 import com.example.core.objects.exceptions.ObjectAttachmentAlreadyExistsException;
 import com.example.core.objects.exceptions.ObjectAttachmentNotFoundException;
 import com.example.core.objects.exceptions.ObjectIsActiveException;
 import com.example.core.objects.exceptions.ObjectNotFoundException;
 import com.example.core.objects.repository.EntityObjectRepository;
+import com.example.core.objects.repository.ObjectCursor;
+import com.example.core.objects.repository.SpatialCondition;
 import com.example.core.scripting.rules.RestrictiveRuleChecker;
 import com.example.storage.api.StorageFile;
 import com.example.storage.api.StorageService;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import lombok.NonNull;
 import org.apache.commons.lang3.StringUtils;
@@ -59,6 +83,19 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional(rollbackFor = Exception.class)
 public class EntityObjectManager {
 
+  private static final int MAX_UNIQUE_VALUES = 1000;
+
+  private static final int MAX_BATCH_GET = 1000;
+
+  private static final int RELATION_BATCH_SIZE = 500;
+
+  /**
+   * Количество объектов импорта, загружаемых одним {@code COPY}
+   */
+  private static final int IMPORT_BATCH_SIZE = 1000;
+
+  private static final int MAX_TILE_ZOOM = 24;
+
   private final EntityObjectRepository repository;
 
   private final EntityTypeManager etMan;
@@ -75,6 +112,10 @@ public class EntityObjectManager {
 
   private final LimitsCounter counter;
 
+  private final EntityObjectQueryCaches queryCaches;
+
+  private final EntityObjectTileCache tileCache;
+
   @Autowired
   public EntityObjectManager(EntityObjectRepository repository,
                              EntityTypeManager etMan,
@@ -83,7 +124,9 @@ public class EntityObjectManager {
                              StorageService storageService,
                              EntitySelectBuilderFactory selectBuilderFactory,
                              LicenseLimitsValidator limitsValidator,
-                             LimitsCounter counter) {
+                             LimitsCounter counter,
+                             EntityObjectQueryCaches queryCaches,
+                             EntityObjectTileCache tileCache) {
     this.repository = repository;
     this.etMan = etMan;
     this.validator = validator;
@@ -92,6 +135,8 @@ public class EntityObjectManager {
     this.selectBuilderFactory = selectBuilderFactory;
     this.limitsValidator = limitsValidator;
     this.counter = counter;
+    this.queryCaches = queryCaches;
+    this.tileCache = tileCache;
   }
 
   /**
@@ -104,10 +149,78 @@ public class EntityObjectManager {
    */
   public Page<EntityObject> findObjectsWithFilter(String register, EntityType entityType,
                                                   EntityObjectFilter filter) {
-    EntitySelectBuilder query = buildQueryWithFilter(register, entityType, filter);
+    return findObjectsWithFilter(register, entityType, filter, new ObjectQueryOptions());
+  }
+
+  /**
+   * Получить страницу объектов с фильтром
+   *
+   * @param register кодовое имя сервиса
+   * @param entityType класс объектов
+   * @param filter фильтр
+   * @param options подсчет количества, упрощение геометрий и пространственный фильтр
+   * @return страница объектов
+   */
+  public Page<EntityObject> findObjectsWithFilter(String register, EntityType entityType,
+                                                  EntityObjectFilter filter,
+                                                  ObjectQueryOptions options) {
+    List<GeometryField> reduced = reducedGeometryFields(entityType, filter, options);
+    Set<Field> fields = objectFields(entityType, filter);
+    fields.removeAll(reduced);
+    EntitySelectBuilder query = sort(buildFilterQuery(register, entityType, filter, fields),
+                                     entityType, filter);
     query.withFields(EntityUtils.standardFields(entityType))
         .pageable(new PageRequest(filter.getPage(), filter.getPageSize()));
-    return repository.findAll(query);
+    EntitySelectBuilder scope = buildFilterQuery(register, entityType, filter,
+                                                 Collections.singleton(StandardField.ID));
+    Page<EntityObject> page = repository.findPage(query, scope, options.getCount(),
+                                                  spatialCondition(entityType, options));
+    repository.loadRelations(page.getContent(), relationFields(entityType, filter),
+                             references(register));
+    repository.loadGeometries(page.getContent(), reduced, filter.getSrid(), options);
+    return page;
+  }
+
+  /**
+   * Получить страницу объектов после позиции, полученной с предыдущей страницей. Сортировка
+   * первой страницы задается фильтром, следующие страницы используют сортировку из позиции
+   *
+   * @param register кодовое имя сервиса
+   * @param entityType класс объектов
+   * @param filter фильтр
+   * @param cursor позиция чтения или {@code null} для первой страницы
+   * @param options упрощение геометрий и пространственный фильтр
+   * @return страница объектов и позиция следующей страницы
+   */
+  public CursorPage<EntityObject> findObjectsAfter(String register, EntityType entityType,
+                                                   EntityObjectFilter filter, String cursor,
+                                                   ObjectQueryOptions options) {
+    CompiledEntityType compiled = CompiledEntityType.of(entityType);
+    ObjectCursor position;
+    if (StringUtils.isBlank(cursor)) {
+      Field sortField = compiled.field(filter.getSortField()).orElse(null);
+      position = ObjectCursor.start(sortField, isDescending(filter));
+    } else {
+      position = ObjectCursor.decode(cursor);
+    }
+
+    List<GeometryField> reduced = reducedGeometryFields(entityType, filter, options);
+    Set<Field> fields = objectFields(entityType, filter);
+    fields.removeAll(reduced);
+    EntitySelectBuilder query = buildFilterQuery(register, entityType, filter, fields)
+        .withFields(compiled.getStandardFieldArray());
+    if (position.getSortField() != null) {
+      Field sortField = compiled.field(position.getSortField())
+          .filter(ObjectCursor::supports)
+          .orElseThrow(() -> new UnprocessableException("Invalid cursor sort field"));
+      query.withFields(sortField);
+    }
+    CursorPage<EntityObject> page = repository.findAfter(query, position, filter.getPageSize(),
+                                                         spatialCondition(entityType, options));
+    repository.loadRelations(page.getContent(), relationFields(entityType, filter),
+                             references(register));
+    repository.loadGeometries(page.getContent(), reduced, filter.getSrid(), options);
+    return page;
   }
 
   /**
@@ -118,9 +231,50 @@ public class EntityObjectManager {
    */
   public List<EntityObject> findAll(String register, String codeName, EntityObjectFilter filter) {
     EntityType entityType = etMan.find(register, codeName);
-    EntitySelectBuilder query = buildQueryWithFilter(register, entityType, filter)
+    EntitySelectBuilder query = buildObjectsQuery(register, entityType, filter)
         .withFields(EntityUtils.standardFields(entityType));
-    return repository.findAll(query).getContent();
+    List<EntityObject> objects = repository.findAll(query).getContent();
+    repository.loadRelations(objects, relationFields(entityType, filter), references(register));
+    return objects;
+  }
+
+  /**
+   * Выгрузить объекты с фильтром. Пагинация игнорируется, объекты передаются обработчику по мере
+   * чтения из базы и не накапливаются в памяти
+   *
+   * @param register кодовое имя сервиса
+   * @param entityType класс объектов
+   * @param filter фильтр
+   * @param options пространственный фильтр
+   * @param consumer обработчик объектов
+   */
+  @Transactional(readOnly = true, rollbackFor = Exception.class)
+  public void exportObjects(String register, EntityType entityType, EntityObjectFilter filter,
+                            ObjectQueryOptions options, Consumer<EntityObject> consumer) {
+    EntitySelectBuilder query = buildObjectsQuery(register, entityType, filter)
+        .withFields(EntityUtils.standardFields(entityType));
+    SpatialCondition spatial = spatialCondition(entityType, options);
+    List<RelationField> relations = relationFields(entityType, filter);
+    if (relations.isEmpty()) {
+      repository.stream(query, spatial, consumer);
+      return;
+    }
+    // Связи загружаются пакетно для порций объектов
+    List<EntityObject> chunk = new ArrayList<>(RELATION_BATCH_SIZE);
+    repository.stream(query, spatial, object -> {
+      chunk.add(object);
+      if (chunk.size() == RELATION_BATCH_SIZE) {
+        exportChunk(register, chunk, relations, consumer);
+      }
+    });
+    exportChunk(register, chunk, relations, consumer);
+  }
+
+  private void exportChunk(String register, List<EntityObject> chunk,
+                           List<RelationField> relations, Consumer<EntityObject> consumer) {
+    repository.loadRelations(chunk, relations, references(register));
+    chunk.forEach(consumer);
+    chunk.clear();
   }
 
   /**
@@ -142,12 +296,21 @@ public class EntityObjectManager {
    * @param register кодовое имя сервиса
    * @param codeName кодовое имя класса объектов
    * @param filter фильтр
+   * @param options пространственный фильтр. Количество с пространственным фильтром не кэшируется
    * @return количество объектов
    */
-  public int count(String register, String codeName, EntityObjectFilter filter) {
+  public int count(String register, String codeName, EntityObjectFilter filter,
+                   ObjectQueryOptions options) {
     EntityType entityType = etMan.find(register, codeName);
-    EntitySelectBuilder query = buildQueryWithFilter(register, entityType, filter);
-    return repository.count(query);
+    SpatialCondition spatial = spatialCondition(entityType, options);
+    if (spatial != null) {
+      EntitySelectBuilder scope = buildFilterQuery(register, entityType, filter,
+                                                   Collections.singleton(StandardField.ID));
+      return repository.count(scope, spatial);
+    }
+    return queryCaches.count(register, entityType.getCodeName(), filter.getCql(),
+                             () -> repository.count(
+                                 buildQueryWithFilter(register, entityType, filter)));
   }
 
   /**
@@ -182,6 +345,151 @@ public class EntityObjectManager {
     return repository.findUniqueValues(entityType, filter);
   }
 
+  /**
+   * Найти уникальные значения по полю. Результат кэшируется до изменения объектов класса
+   *
+   * @param register кодовое имя сервиса
+   * @param entityType класс объектов
+   * @param codeName кодовое имя поля
+   * @param filter фильтр значений
+   * @return список уникальных значений
+   */
+  @Transactional(readOnly = true, rollbackFor = Exception.class)
+  public List<String> findFilterValues(String register, EntityType entityType, String codeName,
+                                       UniqueValuesFilter filter) {
+    Field field = CompiledEntityType.of(entityType).field(codeName)
+        .orElseThrow(() -> new FieldNotFoundException(codeName));
+    if (filter.getLimit() != null) {
+      filter.setLimit(Math.max(1, Math.min(filter.getLimit(), MAX_UNIQUE_VALUES)));
+    }
+    return queryCaches.uniqueValues(register, entityType.getCodeName(), field.getCodeName(),
+                                    filter, () -> findUniqueValues(register, entityType, field,
+                                                                   filter));
+  }
+
+  private List<String> findUniqueValues(String register, EntityType entityType, Field field,
+                                        UniqueValuesFilter filter) {
+    EntitySelectBuilder scope = selectBuilderFactory.newBuilder(register, entityType)
+        .withFields(StandardField.ID);
+    if (StringUtils.isNotBlank(filter.getCql())) {
+      scope.where(CqlFilterCondition.builder()
+                      .from(entityType).where(filter.getCql()).build());
+    }
+    return repository.findUniqueValues(entityType, field, scope, filter);
+  }
+
+  /**
+   * Получить общий охват объектов с фильтром. Результат кэшируется до изменения объектов класса
+   *
+   * @param register кодовое имя сервиса
+   * @param entityType класс объектов
+   * @param codeName кодовое имя геометрического поля или {@code null} для первого геометрического
+   *     поля класса
+   * @param filter фильтр, учитываются CQL и проекция
+   * @param options пространственный фильтр. Охват с пространственным фильтром не кэшируется
+   * @return охват или {@code null}, если у объектов нет геометрии
+   */
+  @Transactional(readOnly = true, rollbackFor = Exception.class)
+  public Extent findExtent(String register, EntityType entityType, String codeName,
+                           EntityObjectFilter filter, ObjectQueryOptions options) {
+    GeometryField field = geometryField(entityType, codeName);
+    int srid = filter.getSrid() == null ? field.getCrs().intValue() : filter.getSrid();
+    SpatialCondition spatial = spatialCondition(entityType, options);
+    Supplier<Extent> loader = () -> {
+      Set<Field> fields = Collections.singleton(StandardField.ID);
+      EntitySelectBuilder scope = buildFilterQuery(register, entityType, filter, fields);
+      return repository.extent(scope, field, srid, spatial);
+    };
+    if (spatial != null) {
+      return loader.get();
+    }
+    return queryCaches.extent(register, entityType.getCodeName(), field.getCodeName(),
+                              filter.getCql(), srid, loader);
+  }
+
+  /**
+   * Получить векторный тайл с объектами класса. Тайлы кэшируются до изменения объектов класса
+   *
+   * @param register кодовое имя сервиса
+   * @param entityType класс объектов
+   * @param codeName кодовое имя геометрического поля или {@code null} для первого геометрического
+   *     поля класса
+   * @param properties кодовые имена полей свойств. Если не заданы - все простые поля класса
+   * @param z масштаб
+   * @param x номер тайла по горизонтали
+   * @param y номер тайла по вертикали
+   * @return тайл в формате Mapbox Vector Tile
+   */
+  @Transactional(readOnly = true, rollbackFor = Exception.class)
+  public byte[] findTile(String register, EntityType entityType, String codeName,
+                         List<String> properties, int z, int x, int y) {
+    if (z < 0 || z > MAX_TILE_ZOOM || x < 0 || y < 0 || x >= 1 << z || y >= 1 << z) {
+      throw new UnprocessableException("Invalid tile " + z + "/" + x + "/" + y);
+    }
+    GeometryField field = geometryField(entityType, codeName);
+    List<Field> tileFields = tileFields(entityType, properties);
+    List<String> names = tileFields.stream().map(Field::getCodeName).collect(Collectors.toList());
+    return tileCache.get(register, entityType.getCodeName(), field.getCodeName(), names, z, x, y,
+                         () -> {
+          EntitySelectBuilder scope = selectBuilderFactory.newBuilder(register, entityType)
+              .withFields(StandardField.ID);
+          return repository.tile(scope, field, tileFields, entityType.getCodeName(), z, x, y);
+        });
+  }
+
+  /**
+   * Поля свойств векторного тайла: запрошенные или идентификатор, наименование и простые поля
+   * класса. Связи, геометрии и множественные поля в тайл не попадают
+   */
+  private static List<Field> tileFields(EntityType entityType, List<String> properties) {
+    CompiledEntityType compiled = CompiledEntityType.of(entityType);
+    List<Field> fields = new ArrayList<>();
+    if (properties == null || properties.isEmpty()) {
+      fields.add(StandardField.ID);
+      fields.add(StandardField.NAME);
+      fields.addAll(compiled.getFields());
+    } else {
+      for (String property : properties) {
+        fields.add(compiled.field(property)
+                       .orElseThrow(() -> new FieldNotFoundException(property)));
+      }
+    }
+    return fields.stream()
+        .filter(field -> !field.isMultiple())
+        .filter(field -> field.getFieldType() != FieldType.RELATION
+            && field.getFieldType() != FieldType.GEOMETRY
+            && field.getFieldType() != FieldType.ATTACHMENT)
+        .distinct()
+        .collect(Collectors.toList());
+  }
+
+  private static GeometryField geometryField(EntityType entityType, String codeName) {
+    CompiledEntityType compiled = CompiledEntityType.of(entityType);
+    if (StringUtils.isBlank(codeName)) {
+      return compiled.getGeometryFields().stream()
+          .filter(field -> !field.isMultiple())
+          .findFirst()
+          .orElseThrow(() -> new UnprocessableException(
+              "Entity type " + entityType.getCodeName() + " has no geometry field"));
+    }
+    return compiled.baseField(codeName)
+        .filter(GeometryField.class::isInstance)
+        .map(GeometryField.class::cast)
+        .filter(field -> !field.isMultiple())
+        .orElseThrow(() -> new FieldNotFoundException(codeName));
+  }
+
+  /**
+   * Пространственное условие параметров чтения или {@code null}, если оно не задано
+   */
+  private static SpatialCondition spatialCondition(EntityType entityType,
+                                                   ObjectQueryOptions options) {
+    if (options == null || !options.isSpatial()) {
+      return null;
+    }
+    return SpatialCondition.of(geometryField(entityType, options.getGeometryField()), options);
+  }
+
   /**
    * Найти объект
    *
@@ -210,9 +518,11 @@ public class EntityObjectManager {
    */
   public ObjectResponse find(String register, String codeName, int objectId, List<String> fields) {
     EntityType entityType = etMan.find(register, codeName);
-    Map<String, BaseField> fieldMap = entityType.fieldMap();
-    List<BaseField> objectFields = fields.stream().map(fieldMap::get).filter(Objects::nonNull).
-        collect(Collectors.toList());
+    CompiledEntityType compiled = CompiledEntityType.of(entityType);
+    List<BaseField> objectFields = fields.stream().map(compiled::baseField)
+        .filter(Optional::isPresent)
+        .map(Optional::get)
+        .collect(Collectors.toList());
     return find(register, entityType, objectId, objectFields);
   }
 
@@ -250,16 +560,104 @@ public class EntityObjectManager {
   }
 
   /**
-   * Получить файл из объекта
+   * Найти несколько объектов по id и guid одним запросом
    *
-   * @param response ответ, содержащий в себе объект
-   * @param guid идентификатор файла объекта
+   * @param register кодовое имя сервиса
+   * @param entityType класс объектов
+   * @param request id, guid и поля объектов
+   * @return найденные объекты в порядке запроса и ненайденные идентификаторы
+   * @throws UnprocessableException запрошено больше {@link #MAX_BATCH_GET} объектов
    */
-  public File getObjectAttachmentFile(@NonNull ObjectResponse response, String guid) {
-    if (response.getObject().getAttachments().stream().noneMatch(
-        o -> o.getGuid().equals(guid))) {
-      throw new ObjectAttachmentNotFoundException();
+  @Transactional(readOnly = true, rollbackFor = Exception.class)
+  public ObjectBatch<EntityObject> findAll(String register, EntityType entityType,
+                                           BatchGetRequest request) {
+    List<Integer> ids = request.getIds() == null ? new ArrayList<>() : request.getIds();
+    List<UUID> guids = request.getGuids() == null ? new ArrayList<>() : request.getGuids();
+    if (ids.size() + guids.size() > MAX_BATCH_GET) {
+      throw new UnprocessableException("Too many objects requested, max is " + MAX_BATCH_GET);
     }
+
+    CompiledEntityType compiled = CompiledEntityType.of(entityType);
+    EntitySelectBuilder query = selectBuilderFactory.newBuilder(register, entityType)
+        .withFields(compiled.getStandardFieldArray());
+    Set<Field> fields;
+    if (request.getFields() == null || request.getFields().isEmpty()) {
+      fields = new HashSet<Field>(compiled.getFields());
+    } else {
+      fields = request.getFields().stream().map(compiled::field)
+          .filter(Optional::isPresent)
+          .map(Optional::get)
+          .collect(Collectors.toSet());
+    }
+    List<RelationField> relations = relationFields(fields);
+    fields.removeAll(relations);
+    query.withFields(fields);
+
+    Map<Integer, EntityObject> byId = new HashMap<>();
+    Map<UUID, EntityObject> byGuid = new HashMap<>();
+    List<EntityObject> objects = repository.findAll(query, ids, guids);
+    repository.loadRelations(objects, relations, references(register));
+    objects.forEach(object -> {
+      byId.put(object.getId(), object);
+      if (object.getGuid() != null) {
+        byGuid.put(object.getGuid(), object);
+      }
+    });
+
+    Map<Integer, EntityObject> found = new LinkedHashMap<>();
+    List<Integer> missingIds = new ArrayList<>();
+    List<UUID> missingGuids = new ArrayList<>();
+    for (Integer id : ids) {
+      EntityObject object = byId.get(id);
+      if (object == null) {
+        missingIds.add(id);
+      } else {
+        found.putIfAbsent(object.getId(), object);
+      }
+    }
+    for (UUID guid : guids) {
+      EntityObject object = byGuid.get(guid);
+      if (object == null) {
+        missingGuids.add(guid);
+      } else {
+        found.putIfAbsent(object.getId(), object);
+      }
+    }
+    return new ObjectBatch<>(new ArrayList<>(found.values()), missingIds, missingGuids);
+  }
+
+  /**
+   * Найти вложение объекта, не загружая остальные поля объекта
+   *
+   * @param register кодовое имя сервиса
+   * @param codeName кодовое имя класса объектов
+   * @param objectId идентификатор объекта
+   * @param guid идентификатор файла объекта
+   * @return вложение
+   * @throws ObjectNotFoundException объект не найден
+   * @throws ObjectAttachmentNotFoundException вложение не найдено
+   */
+  @Transactional(readOnly = true, rollbackFor = Exception.class)
+  public ObjectAttachment findAttachment(String register, String codeName, int objectId,
+                                         String guid) {
+    EntityType entityType = etMan.find(register, codeName);
+    EntitySelectBuilder scope = selectBuilderFactory.newBuilder(register, entityType)
+        .withFields(StandardField.ID)
+        .withId(objectId);
+    return repository.findAttachments(entityType, scope, objectId)
+        .orElseThrow(ObjectNotFoundException::new)
+        .stream()
+        .filter(attachment -> attachment.getGuid().equals(guid))
+        .findAny()
+        .orElseThrow(ObjectAttachmentNotFoundException::new);
+  }
+
+  /**
+   * Получить файл вложения из бакета attachments
+   *
+   * @param guid идентификатор файла объекта
+   */
+  public File getAttachmentFile(String guid) {
     return storageService.extractFile(StorageBuckets.ATTACHMENTS_BUCKET, guid).toFile();
   }
 
@@ -314,11 +712,7 @@ public class EntityObjectManager {
    */
   public EntityObject createObject(EntityType entityType, @NonNull EntityObject object) {
     limitsValidator.checkLimit(LimitKey.OBJECTS);
-    object.setId(0);
-    object.setGuid(null);
-    object.setParentId(null);
-    object.setMetadata(new Metadata(RequestContext.getUser()));
-    object.setStatus(ACTIVE);
+    prepareNewObject(object);
 
     FilesUpdate filesUpdate = updateAttachments(object, null);
 
@@ -329,6 +723,86 @@ public class EntityObjectManager {
     return created;
   }
 
+  /**
+   * Создать несколько новых объектов. Объекты проверяются по отдельности, а сохраняются
+   * пакетно
+   *
+   * @param register кодовое имя сервиса
+   * @param codeName кодовое имя класса объектов
+   * @param objects объекты
+   * @return созданные объекты
+   * @throws EntityTypeNotFoundException класс объектов не найден
+   */
+  public List<EntityObject> createObjects(String register, String codeName,
+                                          @NonNull List<EntityObject> objects) {
+    EntityType entityType = etMan.find(register, codeName);
+    return createObjects(entityType, objects, repository::insertAll);
+  }
+
+  /**
+   * Импортировать новые объекты. Объекты проверяются по отдельности, а загружаются в таблицу
+   * класса через {@code COPY} порциями по {@link #IMPORT_BATCH_SIZE} по мере чтения из
+   * источника, поэтому все объекты импорта в памяти не накапливаются
+   *
+   * @param register кодовое имя сервиса
+   * @param codeName кодовое имя класса объектов
+   * @param source источник, передающий объекты обработчику по одному
+   * @return количество созданных объектов
+   * @throws EntityTypeNotFoundException класс объектов не найден
+   */
+  public int importObjects(String register, String codeName,
+                           @NonNull Consumer<Consumer<EntityObject>> source) {
+    EntityType entityType = etMan.find(register, codeName);
+    List<EntityObject> chunk = new ArrayList<>(IMPORT_BATCH_SIZE);
+    int[] imported = {0};
+    source.accept(object -> {
+      chunk.add(object);
+      if (chunk.size() == IMPORT_BATCH_SIZE) {
+        imported[0] += importChunk(entityType, chunk);
+      }
+    });
+    return imported[0] + importChunk(entityType, chunk);
+  }
+
+  private int importChunk(EntityType entityType, List<EntityObject> chunk) {
+    if (chunk.isEmpty()) {
+      return 0;
+    }
+    int size = createObjects(entityType, chunk, repository::copyAll).size();
+    chunk.clear();
+    return size;
+  }
+
+  private List<EntityObject> createObjects(
+      EntityType entityType, List<EntityObject> objects,
+      BiFunction<EntityType, List<EntityObject>, List<EntityObject>> saver) {
+    limitsValidator.checkLimit(LimitKey.OBJECTS, objects.size());
+
+    long filesCount = 0;
+    long filesSize = 0;
+    for (EntityObject object : objects) {
+      prepareNewObject(object);
+      FilesUpdate filesUpdate = updateAttachments(object, null);
+      filesCount += filesUpdate.getCount();
+      filesSize += filesUpdate.getSize();
+      validate(entityType, object);
+    }
+
+    List<EntityObject> created = saver.apply(entityType, objects);
+    counter.updateCount(LimitKey.OBJECTS, created.size());
+    counter.updateCount(LimitKey.FILES, filesCount);
+    counter.updateCount(LimitKey.FILES_AMOUNT, filesSize);
+    return created;
+  }
+
+  private void prepareNewObject(EntityObject object) {
+    object.setId(0);
+    object.setGuid(null);
+    object.setParentId(null);
+    object.setMetadata(new Metadata(RequestContext.getUser()));
+    object.setStatus(ACTIVE);
+  }
+
   /**
    * Изменить существующий объект
    *
@@ -353,12 +827,14 @@ public class EntityObjectManager {
    */
   public void updateObject(EntityType entityType, @NonNull EntityObject object) {
     int objectId = object.getId();
-    EntityObject original = repository.findOne(entityType, objectId)
+    EntityObject original = repository.findOne(entityType, objectId, entityType.getFields())
         .orElseThrow(ObjectNotFoundException::new);
-    // Перетаскиваем только те атрибуты, которые могут меняться при редактировании
+    // Перетаскиваем только те атрибуты, которые могут меняться при редактировании.
+    // Сохранены будут только поля, значения которых действительно изменились
+    original.trackChanges();
     original.getMetadata().changed(RequestContext.getUser());
     original.setName(object.getName());
-    original.setAttributes(object.getAttributes());
+    original.changeAttributes(object.getAttributes());
     FilesUpdate filesUpdate = updateAttachments(object, original);
     original.setCheckRule(object.isCheckRule());
     validateAndSave(entityType, original);
@@ -417,6 +893,7 @@ public class EntityObjectManager {
 
       prepareAttachmentObject(objectAttachment);
       original.getAttachments().add(objectAttachment);
+      original.markChanged(StandardField.ATTACHMENTS.getCodeName());
     } else {
       throw new ObjectAttachmentAlreadyExistsException();
     }
@@ -433,6 +910,7 @@ public class EntityObjectManager {
   }
 
   private void deleteAttachmentObject(ObjectAttachment objectAttachment, EntityObject original) {
+    original.markChanged(StandardField.ATTACHMENTS.getCodeName());
     original.getAttachments().remove(original.getAttachments().stream().filter(
         o -> o.getGuid().equals(objectAttachment.getGuid())).findAny()
                                          .orElseThrow(ObjectAttachmentNotFoundException::new));
@@ -457,6 +935,7 @@ public class EntityObjectManager {
     if (object.getStatus() == ACTIVE) {
       throw new ObjectIsActiveException();
     }
+    object.trackChanges();
     object.setStatus(ACTIVE);
     object.getMetadata().changed(RequestContext.getUser());
     repository.save(entityType, object);
@@ -477,6 +956,7 @@ public class EntityObjectManager {
         .orElseThrow(ObjectNotFoundException::new);
     EntityObjectStatus status = object.getStatus();
     if (status == ACTIVE) {
+      object.trackChanges();
       object.setStatus(INACTIVE);
       object.getMetadata().changed(RequestContext.getUser());
       repository.save(entityType, object);
@@ -509,6 +989,18 @@ public class EntityObjectManager {
 
   private ObjectResponse find(String register, EntityType entityType, int objectId,
                               List<BaseField> fields) {
+    if (fields.containsAll(CompiledEntityType.of(entityType).getFields())) {
+      // Полный объект берется из кэша, ограничения доступа проверяются отдельным запросом
+      EntitySelectBuilder access = selectBuilderFactory.newBuilder(register, entityType)
+          .withFields(StandardField.ID)
+          .withId(objectId);
+      if (!repository.exists(access)) {
+        throw new ObjectNotFoundException();
+      }
+      return repository.findOne(entityType, objectId)
+          .map(o -> ObjectResponse.of(entityType, o))
+          .orElseThrow(ObjectNotFoundException::new);
+    }
     EntitySelectBuilder query = selectBuilderFactory.newBuilder(register, entityType)
         .withFields(standardFields(entityType))
         .withFields(fields.toArray(new Field[0]))
@@ -519,27 +1011,106 @@ public class EntityObjectManager {
   }
 
   private EntityObject validateAndSave(EntityType entityType, EntityObject object) {
+    validate(entityType, object);
+    return repository.save(entityType, object);
+  }
+
+  private void validate(EntityType entityType, EntityObject object) {
     validator.validate(entityType, object, entityType.getCodeName()).requireValid();
     if (object.isCheckRule()) {
       ruleChecker.check(entityType, object).requireValid();
     }
-    return repository.save(entityType, object);
   }
 
   private EntitySelectBuilder buildQueryWithFilter(String register, EntityType entityType,
                                                    EntityObjectFilter filter) {
-    Set<Field> fields = filter.getFields().stream().map(entityType::getField)
+    EntitySelectBuilder builder = buildFilterQuery(register, entityType, filter,
+                                                   filterFields(entityType, filter));
+    return sort(builder, entityType, filter);
+  }
+
+  /**
+   * Запрос объектов с фильтром без полей связей. Связи загружаются пакетно после запроса через
+   * {@link EntityObjectRepository#loadRelations}
+   */
+  private EntitySelectBuilder buildObjectsQuery(String register, EntityType entityType,
+                                                EntityObjectFilter filter) {
+    EntitySelectBuilder builder = buildFilterQuery(register, entityType, filter,
+                                                   objectFields(entityType, filter));
+    return sort(builder, entityType, filter);
+  }
+
+  /**
+   * Сортировка по полю фильтра и id. Id делает порядок однозначным, поэтому страницы с
+   * одинаковыми значениями поля сортировки не пересекаются
+   */
+  private EntitySelectBuilder sort(EntitySelectBuilder builder, EntityType entityType,
+                                   EntityObjectFilter filter) {
+    CompiledEntityType.of(entityType).field(filter.getSortField())
+        .filter(field -> !StandardField.ID.equals(field))
+        .ifPresent(field -> builder.sort(field, filter.getSortType()));
+    builder.sort(StandardField.ID, filter.getSortType());
+    return builder;
+  }
+
+  private static boolean isDescending(EntityObjectFilter filter) {
+    return "desc".equalsIgnoreCase(String.valueOf(filter.getSortType()));
+  }
+
+  private Set<Field> filterFields(EntityType entityType, EntityObjectFilter filter) {
+    CompiledEntityType compiled = CompiledEntityType.of(entityType);
+    return filter.getFields().stream().map(compiled::field)
         .filter(Optional::isPresent)
         .map(Optional::get)
         .collect(Collectors.toSet());
+  }
+
+  private Set<Field> objectFields(EntityType entityType, EntityObjectFilter filter) {
+    Set<Field> fields = filterFields(entityType, filter);
+    fields.removeIf(field -> field.getFieldType() == FieldType.RELATION);
+    return fields;
+  }
 
+  /**
+   * Одиночные геометрические поля фильтра, которые читаются отдельно с упрощением. Пусто, если
+   * параметры чтения геометрий не заданы
+   */
+  private List<GeometryField> reducedGeometryFields(EntityType entityType,
+                                                    EntityObjectFilter filter,
+                                                    ObjectQueryOptions options) {
+    if (options == null || !options.isGeometryReduced()) {
+      return Collections.emptyList();
+    }
+    return filterFields(entityType, filter).stream()
+        .filter(field -> field.getFieldType() == FieldType.GEOMETRY && !field.isMultiple())
+        .map(GeometryField.class::cast)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Запрос объектов связанного класса с правами пользователя сервиса
+   */
+  private Function<String, EntitySelectBuilder> references(String register) {
+    return codeName -> selectBuilderFactory.newBuilder(register, etMan.find(register, codeName));
+  }
+
+  private List<RelationField> relationFields(EntityType entityType, EntityObjectFilter filter) {
+    return relationFields(filterFields(entityType, filter));
+  }
+
+  private static List<RelationField> relationFields(Set<Field> fields) {
+    return fields.stream()
+        .filter(field -> field.getFieldType() == FieldType.RELATION)
+        .map(RelationField.class::cast)
+        .collect(Collectors.toList());
+  }
+
+  private EntitySelectBuilder buildFilterQuery(String register, EntityType entityType,
+                                               EntityObjectFilter filter, Set<Field> fields) {
     EntitySelectBuilder builder = selectBuilderFactory.newBuilder(register, entityType)
         .withFields(fields)
         .srid(filter.getSrid());
 
-    entityType.getField(filter.getSortField())
-        .ifPresent(field -> builder.sort(field, filter.getSortType()));
-
     if (StringUtils.isNotBlank(filter.getCql())) {
       CqlFilterCondition cql = CqlFilterCondition.builder()
           .from(entityType).where(filter.getCql()).build();
@@ -551,7 +1122,8 @@ public class EntityObjectManager {
   private EntitySelectBuilder buildQueryWithFilterAndPageable(String register,
                                                               EntityType entityType,
                                                               EntityObjectFilter filter) {
-    Set<Field> fields = filter.getFields().stream().map(entityType::getField)
+    CompiledEntityType compiled = CompiledEntityType.of(entityType);
+    Set<Field> fields = filter.getFields().stream().map(compiled::field)
         .filter(Optional::isPresent)
         .map(Optional::get)
         .collect(Collectors.toSet());
@@ -559,7 +1131,7 @@ public class EntityObjectManager {
     EntitySelectBuilder builder = selectBuilderFactory.newBuilder(register, entityType)
         .withFields(fields);
 
-    entityType.getField(filter.getSortField())
+    compiled.field(filter.getSortField())
         .ifPresent(field -> builder.sort(field, filter.getSortType()));
 
     if (StringUtils.isNotBlank(filter.getCql())) {
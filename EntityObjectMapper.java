@@ -10,11 +10,15 @@ import static java.util.stream.Collectors.toMap;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.example.common.Utils;
 import com.example.common.context.RequestContext;
 import com.example.common.exceptions.UnprocessableException;
 import com.example.common.time.DateTimeUtils;
+import com.example.core.common.Metadata;
 import com.example.core.common.Status;
+import com.example.core.common.rest.MetadataDTO;
 import com.example.core.layers.api.dto.AttributeResponse;
 import com.example.core.layers.api.dto.FeatureField;
 import com.example.core.layers.entities.Layer;
@@ -23,6 +27,7 @@ import com.example.core.layers.entities.LayerType;
 import com.example.core.layers.entities.objects.LayerObject;
 import com.example.core.layers.entities.objects.LayerObjectAttribute;
 import com.example.core.layers.exceptions.NotEntityTypeLayerException;
+import com.example.core.model.CompiledEntityType;
 import com.example.core.model.EntityUtils;
 import com.example.core.model.entities.EntityType;
 import com.example.core.model.entities.Field;
@@ -81,8 +86,17 @@ public final class EntityObjectMapper {
   private static Converter<EntityObjectStatus, Integer> STATUS_INTEGER_CONVERTER =
       ctx -> ctx.getSource().ordinal();
 
-  private static Converter<UUID, String> UUID_CONVERTER =
-      ctx -> GUID_OR_NULL.apply(ctx.getSource());
+  /**
+   * Общий {@link ObjectMapper}. Потокобезопасен после настройки, поэтому кеши сериализаторов
+   * и десериализаторов Jackson переиспользуются между вызовами
+   */
+  private static final ObjectMapper JSON = new ObjectMapper();
+
+  private static final ObjectReader TREE_READER = JSON.readerFor(JsonNode.class);
+
+  private static final ObjectReader ATTACHMENTS_READER = JSON.readerFor(ObjectAttachment[].class);
+
+  private static final ObjectWriter JSON_WRITER = JSON.writer();
 
   private static final EntityObjectMapper INSTANCE = new EntityObjectMapper();
 
@@ -90,12 +104,6 @@ public final class EntityObjectMapper {
 
   private EntityObjectMapper() {
     mapper = new ModelMapper();
-    mapper.createTypeMap(EntityObject.class, EntityObjectDTO.class)
-        .addMappings(m -> m.skip((dto, o) -> dto.setAttributes(null)))
-        .addMappings(m -> m.using(STATUS_INTEGER_CONVERTER)
-            .map(EntityObject::getStatus, EntityObjectDTO::setStatus))
-        .addMappings(m -> m.using(UUID_CONVERTER).
-            map(EntityObject::getGuid, EntityObjectDTO::setGuid));
     mapper.createTypeMap(EntityObject.class, Feature.class)
         .addMappings(m -> m.using(STATUS_INTEGER_CONVERTER)
             .map(EntityObject::getStatus, Feature::setStatus));
@@ -110,7 +118,15 @@ public final class EntityObjectMapper {
    * @return конвертированный dto {@link EntityObjectDTO}
    */
   public static EntityObjectDTO map(@NonNull EntityType entityType, @NonNull EntityObject object) {
-    EntityObjectDTO dto = INSTANCE.mapper.map(object, EntityObjectDTO.class);
+    EntityObjectDTO dto = new EntityObjectDTO();
+    dto.setId(object.getId());
+    dto.setName(object.getName());
+    dto.setGuid(GUID_OR_NULL.apply(object.getGuid()));
+    dto.setEntityType(object.getEntityType());
+    dto.setParentId(object.getParentId());
+    dto.setMetadata(mapMetadata(object.getMetadata()));
+    dto.setStatus(object.getStatus().ordinal());
+    dto.setAttachments(object.getAttachments());
     Map<String, Object> valueMap = new LinkedHashMap<>();
     EntityUtils.attributeValueMap(entityType, object)
         .forEach((f, v) -> valueMap.put(f.getCodeName(), mapAttributeValue(f, v)));
@@ -118,6 +134,24 @@ public final class EntityObjectMapper {
     return dto;
   }
 
+  /**
+   * Конвертировать {@link Metadata} в {@link MetadataDTO}
+   *
+   * @param metadata метаданные объекта
+   * @return конвертированный {@link MetadataDTO} или {@code null}
+   */
+  public static MetadataDTO mapMetadata(Metadata metadata) {
+    if (metadata == null) {
+      return null;
+    }
+    MetadataDTO dto = new MetadataDTO();
+    dto.setCreateUser(metadata.getCreateUser());
+    dto.setCreateDate(metadata.getCreateDate());
+    dto.setChangeUser(metadata.getChangeUser());
+    dto.setChangeDate(metadata.getChangeDate());
+    return dto;
+  }
+
   /**
    * Конвертировать {@link EntityObject} в {@link Feature}
    */
@@ -144,9 +178,9 @@ public final class EntityObjectMapper {
         .map(f -> INSTANCE.mapper.map(f, FeatureField.class))
         .collect(Collectors.toList());
     if (layer.getLayerType() == LayerType.ENTITY_TYPE) {
-      Map<String, BaseField> fieldMap = layer.getGeometryField().getEntityType().fieldMap();
+      CompiledEntityType compiled = CompiledEntityType.of(layer.getGeometryField().getEntityType());
       fields.forEach(f -> {
-        boolean required = Optional.ofNullable(fieldMap.get(f.getCodeName()))
+        boolean required = compiled.baseField(f.getCodeName())
             .map(BaseField::isRequired).orElse(false);
         f.setRequired(required);
       });
@@ -163,7 +197,7 @@ public final class EntityObjectMapper {
   public static EntityObject mapFromJson(@NonNull EntityType entityType, String json) {
     Utils.requireNonBlank(json, "object json is blank");
     try {
-      return mapFromJson(entityType, new ObjectMapper().readTree(json));
+      return mapFromJson(entityType, TREE_READER.<JsonNode>readValue(json));
     } catch (IOException e) {
       throw new UnprocessableException("Failed to parse object", e);
     }
@@ -228,14 +262,16 @@ public final class EntityObjectMapper {
     object.setStatus(EntityObjectStatus.values()[layerObject.getStatus()]);
     object.getMetadata().changed(RequestContext.getUser());
 
-    JsonNode attachments = new ObjectMapper().valueToTree(layerObject.getAttachments());
+    JsonNode attachments = JSON.valueToTree(layerObject.getAttachments());
     object.setAttachments(readAttachmentObjects(attachments));
 
-    Map<String, BaseField> fieldMap = entityType.fieldMap();
+    CompiledEntityType compiled = CompiledEntityType.of(entityType);
 
     Map<String, List<Attribute>> attributes = layerAttributes.stream()
-        .filter(dto -> fieldMap.containsKey(dto.getCodeName()))
-        .map(dto -> convertToEntityObjectAttribute(dto, fieldMap.get(dto.getCodeName())))
+        .map(dto -> compiled.baseField(dto.getCodeName())
+            .map(field -> convertToEntityObjectAttribute(dto, field)))
+        .filter(Optional::isPresent)
+        .map(Optional::get)
         .collect(toMap(AttributeResponse::getCodeName, AttributeResponse::getAttributes));
     attributes.put(geomField, singletonList(new GeometryAttribute(layerObject.getGeometry())));
     object.setAttributes(attributes);
@@ -268,7 +304,7 @@ public final class EntityObjectMapper {
   public static List<ObjectAttachment> mapJsonToAttachments(String value) {
     try {
       return new ArrayList<>(
-          Arrays.asList(new ObjectMapper().readValue(value, ObjectAttachment[].class)));
+          Arrays.asList(ATTACHMENTS_READER.<ObjectAttachment[]>readValue(value)));
     } catch (IOException e) {
       throw new UnprocessableException("Failed to parse json attachments string", e);
     }
@@ -283,7 +319,7 @@ public final class EntityObjectMapper {
    */
   public static String mapToJsonString(Object value) {
     try {
-      return new ObjectMapper().writeValueAsString(value);
+      return JSON_WRITER.writeValueAsString(value);
     } catch (JsonProcessingException e) {
       throw new UnprocessableException("Failed to convert object to json string", e);
     }
@@ -496,7 +532,9 @@ public final class EntityObjectMapper {
       }
       if (obj instanceof LinkedHashMap) {
         EntityObject entityobject = new EntityObject();
-        entityobject.setEntityType((String) ((LinkedHashMap) obj).get("entityType"));
+        String entityType = (String) ((LinkedHashMap) obj).get("entityType");
+        entityobject.setEntityType(entityType != null ? entityType
+                                                      : ((RelationField) baseField).getRelates());
         entityobject.setId((Integer) ((LinkedHashMap) obj).get("id"));
         return new RelationAttribute(entityobject);
       }
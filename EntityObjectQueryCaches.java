@@ -0,0 +1,215 @@
+package com.example.core.objects.cache;
+
+import com.example.common.context.RequestContext;
+import com.example.core.layers.entities.Extent;
+import com.example.core.objects.entities.UniqueValuesFilter;
+import com.example.core.objects.repository.EntityObjectsChangedEvent;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import lombok.Value;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Кэши результатов запросов по объектам.
+ *
+ * Результаты запросов с ограничениями доступа сервиса хранятся отдельно для каждого пользователя.
+ * Значения класса объектов сбрасываются после завершения транзакции, изменившей его объекты.
+ * Статистика попаданий публикуется через JMX
+ */
+@Component
+@ManagedResource(objectName = "com.example.core:type=EntityObjectQueryCaches")
+public class EntityObjectQueryCaches {
+
+  private final QueryResultCache<CountKey, Integer> counts;
+
+  private final QueryResultCache<ValuesKey, List<String>> uniqueValues;
+
+  private final QueryResultCache<ExtentKey, Extent> extents;
+
+  @Autowired
+  public EntityObjectQueryCaches(
+      @org.springframework.beans.factory.annotation.Value(
+          "${objects.cache.count.max-staleness-ms:30000}") long countStaleness,
+      @org.springframework.beans.factory.annotation.Value(
+          "${objects.cache.count.max-size:10000}") int countMaxSize,
+      @org.springframework.beans.factory.annotation.Value(
+          "${objects.cache.values.max-staleness-ms:300000}") long valuesStaleness,
+      @org.springframework.beans.factory.annotation.Value(
+          "${objects.cache.values.max-size:2000}") int valuesMaxSize,
+      @org.springframework.beans.factory.annotation.Value(
+          "${objects.cache.extent.max-staleness-ms:300000}") long extentStaleness,
+      @org.springframework.beans.factory.annotation.Value(
+          "${objects.cache.extent.max-size:2000}") int extentMaxSize) {
+    this.counts = new QueryResultCache<>(countStaleness, countMaxSize);
+    this.uniqueValues = new QueryResultCache<>(valuesStaleness, valuesMaxSize);
+    this.extents = new QueryResultCache<>(extentStaleness, extentMaxSize);
+  }
+
+  /**
+   * Получить количество объектов из кэша или посчитать его
+   *
+   * @param register кодовое имя сервиса, определяющего ограничения доступа. {@code null} - без
+   *     ограничений
+   * @param entityType кодовое имя класса объектов
+   * @param cql фильтр CQL
+   * @param loader подсчет количества
+   * @return количество объектов
+   */
+  public int count(String register, String entityType, String cql, Supplier<Integer> loader) {
+    return counts.get(new CountKey(register, securityScope(register), entityType,
+                                   normalizeCql(cql)), loader);
+  }
+
+  /**
+   * Получить уникальные значения поля из кэша или загрузить их
+   *
+   * @param register кодовое имя сервиса
+   * @param entityType кодовое имя класса объектов
+   * @param field кодовое имя поля
+   * @param filter фильтр значений
+   * @param loader загрузка значений
+   * @return уникальные значения
+   */
+  public List<String> uniqueValues(String register, String entityType, String field,
+                                   UniqueValuesFilter filter, Supplier<List<String>> loader) {
+    String prefix = StringUtils.defaultString(filter.getPrefix()).toLowerCase();
+    ValuesKey key = new ValuesKey(register, securityScope(register), entityType, field, prefix,
+                                  normalizeCql(filter.getCql()), filter.isByFrequency(),
+                                  filter.getLimit());
+    return uniqueValues.get(key, () -> Collections.unmodifiableList(loader.get()));
+  }
+
+  /**
+   * Получить охват объектов из кэша или посчитать его
+   *
+   * @param register кодовое имя сервиса
+   * @param entityType кодовое имя класса объектов
+   * @param field кодовое имя геометрического поля
+   * @param cql фильтр CQL
+   * @param srid код проекции
+   * @param loader подсчет охвата
+   * @return охват или {@code null}
+   */
+  public Extent extent(String register, String entityType, String field, String cql, int srid,
+                       Supplier<Extent> loader) {
+    return extents.get(new ExtentKey(register, securityScope(register), entityType, field,
+                                     normalizeCql(cql), srid), loader);
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+  public void onObjectsChanged(EntityObjectsChangedEvent event) {
+    counts.invalidate(key -> key.getEntityType().equalsIgnoreCase(event.getEntityType()));
+    uniqueValues.invalidate(key -> key.getEntityType().equalsIgnoreCase(event.getEntityType()));
+    extents.invalidate(key -> key.getEntityType().equalsIgnoreCase(event.getEntityType()));
+  }
+
+  @ManagedOperation(description = "Сбросить все кэши")
+  public void clear() {
+    counts.clear();
+    uniqueValues.clear();
+    extents.clear();
+  }
+
+  @ManagedAttribute(description = "Попадания в кэш количества объектов")
+  public long getCountHits() {
+    return counts.getHits();
+  }
+
+  @ManagedAttribute(description = "Промахи кэша количества объектов")
+  public long getCountMisses() {
+    return counts.getMisses();
+  }
+
+  @ManagedAttribute(description = "Размер кэша количества объектов")
+  public int getCountSize() {
+    return counts.getSize();
+  }
+
+  @ManagedAttribute(description = "Попадания в кэш уникальных значений")
+  public long getUniqueValuesHits() {
+    return uniqueValues.getHits();
+  }
+
+  @ManagedAttribute(description = "Промахи кэша уникальных значений")
+  public long getUniqueValuesMisses() {
+    return uniqueValues.getMisses();
+  }
+
+  @ManagedAttribute(description = "Попадания в кэш охватов")
+  public long getExtentHits() {
+    return extents.getHits();
+  }
+
+  @ManagedAttribute(description = "Промахи кэша охватов")
+  public long getExtentMisses() {
+    return extents.getMisses();
+  }
+
+  /**
+   * Пользователь, ограничения доступа которого применены к запросу, или {@code null} для запросов
+   * без ограничений
+   */
+  private static String securityScope(String register) {
+    return register == null ? null : RequestContext.getUser();
+  }
+
+  private static String normalizeCql(String cql) {
+    return StringUtils.isBlank(cql) ? "" : StringUtils.normalizeSpace(cql);
+  }
+
+  @Value
+  private static class CountKey {
+
+    String register;
+
+    String user;
+
+    String entityType;
+
+    String cql;
+  }
+
+  @Value
+  private static class ValuesKey {
+
+    String register;
+
+    String user;
+
+    String entityType;
+
+    String field;
+
+    String prefix;
+
+    String cql;
+
+    boolean byFrequency;
+
+    Integer limit;
+  }
+
+  @Value
+  private static class ExtentKey {
+
+    String register;
+
+    String user;
+
+    String entityType;
+
+    String field;
+
+    String cql;
+
+    int srid;
+  }
+}
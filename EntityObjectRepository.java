@@ -7,18 +7,23 @@ import static com.example.core.model.DbNameProvider.relationTable;
 import static com.example.core.model.EntityUtils.fullAttributeValueMap;
 import static com.example.core.model.EntityUtils.hasRelationTable;
 import static com.example.core.model.EntityUtils.innerField;
-import static com.example.core.model.EntityUtils.standardFields;
+import static com.example.core.model.entities.StandardField.ATTACHMENTS;
+import static com.example.core.model.entities.StandardField.CHANGE_DATE;
+import static com.example.core.model.entities.StandardField.CHANGE_USER;
 import static com.example.core.model.entities.StandardField.CREATE_DATE;
 import static com.example.core.model.entities.StandardField.CREATE_USER;
 import static com.example.core.model.entities.StandardField.GUID;
 import static com.example.core.model.entities.StandardField.ID;
+import static com.example.core.model.entities.StandardField.NAME;
+import static com.example.core.model.entities.StandardField.STATUS;
+import static com.example.core.objects.api.EntityObjectMapper.mapJsonToAttachments;
 import static com.example.core.objects.api.EntityObjectMapper.mapToJsonString;
 import static java.text.MessageFormat.format;
 
 import com.example.core.common.db.SqlArrayUtils;
 import com.example.core.gis.Point;
 import com.example.core.layers.entities.Extent;
-import com.example.core.model.DbNameProvider;
+import com.example.core.model.CompiledEntityType;
 import com.example.core.model.entities.EntityType;
 import com.example.core.model.entities.Field;
 import com.example.core.model.entities.FieldType;
@@ -26,12 +31,23 @@ import com.example.core.model.entities.fields.BaseField;
 import com.example.core.model.entities.fields.GeometryField;
 import com.example.core.model.entities.fields.RelationField;
 import com.example.core.model.exceptions.FieldNotFoundException;
+import com.example.core.objects.api.dto.ObjectAttachment;
+import com.example.core.objects.cache.EntityObjectCache;
+import com.example.core.objects.cache.EntityObjectQueryCaches;
+import com.example.core.objects.cache.EntityObjectTileCache;
 import com.example.core.objects.EntitySelectBuilder;
 import com.example.core.objects.EntitySelectBuilderFactory;
+import com.example.core.objects.entities.CountMode;
+import com.example.core.objects.entities.CursorPage;
 import com.example.core.objects.entities.EntityObject;
+import com.example.core.objects.entities.EntityObjectStatus;
+import com.example.core.objects.entities.ObjectQueryOptions;
 import com.example.core.objects.entities.SearchRecord;
+import com.example.core.objects.entities.UniqueValuesFilter;
+import com.example.core.objects.entities.attributes.Attribute;
 import com.example.core.objects.entities.attributes.Geometry;
-import com.example.core.objects.entities.attributes.Geometry.Type;
+import com.example.core.objects.entities.attributes.GeometryAttribute;
+import com.example.core.objects.entities.attributes.RelationAttribute;
 import com.example.core.objects.exceptions.EntityGeometryException;
 import java.sql.Array;
 import java.sql.Connection;
@@ -41,25 +57,51 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.StringJoiner;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameterValue;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
 
@@ -72,19 +114,69 @@ public class EntityObjectRepository {
 
   private static final String GEOM_FUNCTION = "ST_SetSRID({0}(?), {1,number,#})";
 
-  private static final String ST_FROM_TEXT = "ST_GeomFromText";
+  private static final int STREAM_FETCH_SIZE = 1000;
 
-  private static final String ST_FROM_GEOJSON = "ST_GeomFromGeoJSON";
+  private static final int INSERT_BATCH_SIZE = 500;
+
+  private static final int STATEMENT_CACHE_SIZE = 1024;
+
+  private static final String TOTAL_COLUMN = "total_count__";
+
+  /**
+   * Размер тайла в единицах векторного тайла
+   */
+  private static final int TILE_EXTENT = 4096;
+
+  /**
+   * Буфер вокруг тайла в единицах векторного тайла, чтобы линии не обрывались на границе
+   */
+  private static final int TILE_BUFFER = 64;
+
+  private static final String TILE_GEOMETRY = "mvt_geom__";
+
+  /**
+   * Количество частей, на которые делится сторона охвата перед переводом в другую проекцию
+   */
+  private static final int EXTENT_SEGMENTS = 64;
+
+  /**
+   * Полная точность координат {@code ST_AsText}
+   */
+  private static final int MAX_DECIMAL_DIGITS = 15;
+
+  /**
+   * Оценка строк верхнего узла плана в выводе {@code EXPLAIN (FORMAT JSON)}
+   */
+  private static final Pattern PLAN_ROWS = Pattern.compile("\"Plan Rows\":\\s*(\\d+)");
 
   private final JdbcTemplate jdbcTemplate;
 
   private final EntitySelectBuilderFactory selectBuilderFactory;
 
+  private final Map<StatementTemplate.Key, StatementTemplate> statementTemplates =
+      new ConcurrentHashMap<>();
+
+  private final EntityObjectQueryCaches queryCaches;
+
+  private final EntityObjectCache objectCache;
+
+  private final EntityObjectTileCache tileCache;
+
+  private final ApplicationEventPublisher eventPublisher;
+
   @Autowired
   public EntityObjectRepository(JdbcTemplate jdbcTemplate,
-                                EntitySelectBuilderFactory selectBuilderFactory) {
+                                EntitySelectBuilderFactory selectBuilderFactory,
+                                EntityObjectQueryCaches queryCaches,
+                                EntityObjectCache objectCache,
+                                EntityObjectTileCache tileCache,
+                                ApplicationEventPublisher eventPublisher) {
     this.jdbcTemplate = jdbcTemplate;
     this.selectBuilderFactory = selectBuilderFactory;
+    this.queryCaches = queryCaches;
+    this.objectCache = objectCache;
+    this.tileCache = tileCache;
+    this.eventPublisher = eventPublisher;
   }
 
   /**
@@ -96,12 +188,236 @@ public class EntityObjectRepository {
     return findAll(query, new EntityObjectRowMapper(query));
   }
 
+  /**
+   * Загрузить страницу объектов.
+   *
+   * Порядок строк и offset/limit страницы задает сам построитель. Для {@link CountMode#EXACT}
+   * в список колонок запроса добавляется {@code count(*) over()}: окно вычисляется до
+   * offset/limit, поэтому общее количество читается вместе со страницей. Отдельный запрос
+   * количества по {@code scope} выполняется только для страницы за последним объектом. Для
+   * {@link CountMode#NONE} читается одна лишняя строка, по которой определяется наличие
+   * следующей страницы.
+   *
+   * Пространственное условие накладывается на запрос построителя без пагинации, offset/limit в
+   * этом случае переносятся во внешний запрос
+   *
+   * @param query запрос объектов с сортировкой и пагинацией
+   * @param scope запрос id тех же объектов без сортировки
+   * @param countMode способ подсчета общего количества объектов
+   * @param spatial пространственное условие или {@code null}
+   * @return страница объектов
+   */
+  public Page<EntityObject> findPage(EntitySelectBuilder query, EntitySelectBuilder scope,
+                                     CountMode countMode, SpatialCondition spatial) {
+    EntityObjectRowMapper rowMapper = new EntityObjectRowMapper(query);
+    Pageable pageable = query.getPageable();
+    if (pageable == null) {
+      String sql = query.build();
+      List<Object> params = new ArrayList<>(Arrays.asList(query.getParams()));
+      sql = restrict(sql, params, spatial);
+      log.trace("objects select query:\n{}", sql);
+      return new PageImpl<>(jdbcTemplate.query(sql, rowMapper, params.toArray()));
+    }
+
+    boolean lookAhead = countMode == CountMode.NONE;
+    List<Object> params = new ArrayList<>();
+    String sql;
+    query.pageable(lookAhead ? lookAhead(pageable) : pageable);
+    try {
+      sql = pageSql(query, params, spatial);
+    } finally {
+      query.pageable(pageable);
+    }
+    String windowed = countMode == CountMode.EXACT ? withTotal(sql) : null;
+    String pageSql = windowed == null ? sql : windowed;
+    log.trace("objects page query:\n{}", pageSql);
+    long[] window = {-1};
+    List<EntityObject> objects = jdbcTemplate.query(pageSql, (rs, rowNum) -> {
+      if (windowed != null) {
+        window[0] = rs.getLong(TOTAL_COLUMN);
+      }
+      return rowMapper.mapRow(rs, rowNum);
+    }, params.toArray());
+
+    long total;
+    if (lookAhead) {
+      boolean hasNext = objects.size() > pageable.getPageSize();
+      if (hasNext) {
+        objects = new ArrayList<>(objects.subList(0, pageable.getPageSize()));
+      }
+      total = pageable.getOffset() + objects.size() + (hasNext ? 1 : 0);
+    } else if (window[0] >= 0) {
+      total = window[0];
+    } else if (!objects.isEmpty() && objects.size() < pageable.getPageSize()
+        || objects.isEmpty() && pageable.getOffset() == 0) {
+      // Последняя страница: количество известно без подсчета
+      total = pageable.getOffset() + objects.size();
+    } else if (countMode == CountMode.ESTIMATED) {
+      String scopeSql = scope.build();
+      List<Object> scopeParams = new ArrayList<>(Arrays.asList(scope.getParams()));
+      scopeSql = restrict(scopeSql, scopeParams, spatial);
+      total = Math.max(estimateCount(scopeSql, scopeParams),
+                       pageable.getOffset() + objects.size());
+    } else {
+      total = count(scope, spatial);
+    }
+    return new PageImpl<>(objects, pageable, total);
+  }
+
+  /**
+   * Загрузить страницу объектов после указанной позиции.
+   *
+   * Сортировка и пагинация запроса не используются: запрос оборачивается подзапросом с условием
+   * по значению поля сортировки и id последнего прочитанного объекта. Подзапрос не сортируется,
+   * поэтому PostgreSQL переносит условие в запрос к таблице и читает страницу поиском по индексу
+   * (поле, id), так же быстро, как первую. Пустые значения, как и в индексе, считаются
+   * наибольшими и читаются отдельной веткой: в конце по возрастанию и в начале по убыванию.
+   * Поле сортировки должно быть в списке полей запроса
+   *
+   * @param query запрос
+   * @param cursor позиция чтения
+   * @param size размер страницы
+   * @param spatial пространственное условие или {@code null}
+   * @return страница объектов и позиция следующей страницы
+   */
+  public CursorPage<EntityObject> findAfter(EntitySelectBuilder query, ObjectCursor cursor,
+                                            int size, SpatialCondition spatial) {
+    String column = cursor.getSortField() == null ? null : "q." + cursor.getSortField();
+    String compare = cursor.isDescending() ? "<" : ">";
+    String direction = cursor.isDescending() ? "desc" : "asc";
+    List<Object> sourceParams = new ArrayList<>(Arrays.asList(query.getParams()));
+    String source = restrict(query.build(), sourceParams, spatial);
+
+    List<Object> afterId = Collections.singletonList(cursor.getId());
+    List<Object> params = new ArrayList<>();
+    String sql;
+    if (column == null) {
+      sql = seekBranch(source, sourceParams,
+                       cursor.hasPosition() ? format("q.id {0} ?", compare) : null,
+                       cursor.hasPosition() ? afterId : Collections.emptyList(),
+                       "q.id " + direction, size + 1, params);
+    } else {
+      boolean inNulls = cursor.hasPosition() && cursor.getValue() == null;
+      boolean inValues = cursor.hasPosition() && cursor.getValue() != null;
+
+      List<Object> valueParams = new ArrayList<>();
+      String valueBranch = null;
+      if (!inNulls || cursor.isDescending()) {
+        // Значение передается без типа, PostgreSQL приводит его к типу колонки
+        valueBranch = seekBranch(source, sourceParams,
+                            inValues ? format("({0}, q.id) {1} (?, ?)", column, compare)
+                                     : column + " is not null",
+                            inValues ? Arrays.asList(
+                                new SqlParameterValue(Types.OTHER, cursor.getValue()),
+                                cursor.getId()) : Collections.emptyList(),
+                            format("{0} {1}, q.id {1}", column, direction), size + 1,
+                            valueParams);
+      }
+      List<Object> nullParams = new ArrayList<>();
+      String nullBranch = null;
+      if (!inValues || !cursor.isDescending()) {
+        nullBranch = seekBranch(source, sourceParams,
+                                inNulls ? format("{0} is null and q.id {1} ?", column, compare)
+                                        : column + " is null",
+                                inNulls ? afterId : Collections.emptyList(),
+                                "q.id " + direction, size + 1, nullParams);
+      }
+
+      List<String> branches = new ArrayList<>();
+      if (cursor.isDescending()) {
+        addBranch(branches, params, nullBranch, nullParams);
+        addBranch(branches, params, valueBranch, valueParams);
+      } else {
+        addBranch(branches, params, valueBranch, valueParams);
+        addBranch(branches, params, nullBranch, nullParams);
+      }
+      if (branches.size() == 1) {
+        sql = branches.get(0);
+      } else {
+        sql = format("select q.* from (({0}) union all ({1})) q limit ?", branches.get(0),
+                     branches.get(1));
+        params.add(size + 1);
+      }
+    }
+    log.trace("{} objects seek query:\n{}", query.getEntityType().getCodeName(), sql);
+
+    EntityObjectRowMapper rowMapper = new EntityObjectRowMapper(query);
+    List<String> values = new ArrayList<>();
+    List<EntityObject> objects = jdbcTemplate.query(sql, (rs, rowNum) -> {
+      values.add(cursor.getSortField() == null ? null : rs.getString(cursor.getSortField()));
+      return rowMapper.mapRow(rs, rowNum);
+    }, params.toArray());
+
+    if (objects.size() <= size) {
+      return new CursorPage<>(objects, null);
+    }
+    objects = objects.subList(0, size);
+    EntityObject last = objects.get(size - 1);
+    return new CursorPage<>(objects, cursor.after(last.getId(), values.get(size - 1)).encode());
+  }
+
+  /**
+   * Ветка запроса чтения по ключу: несортированный подзапрос с условием, сортировкой и лимитом.
+   * Параметры ветки добавляются в {@code params}
+   */
+  private static String seekBranch(String source, List<Object> sourceParams, String where,
+                                   List<Object> whereParams, String order, int limit,
+                                   List<Object> params) {
+    params.addAll(sourceParams);
+    params.addAll(whereParams);
+    params.add(limit);
+    return format("select q.* from ({0}) q{1} order by {2} limit ?", source,
+                  where == null ? "" : " where " + where, order);
+  }
+
+  private static void addBranch(List<String> branches, List<Object> params, String branch,
+                                List<Object> branchParams) {
+    if (branch != null) {
+      branches.add(branch);
+      params.addAll(branchParams);
+    }
+  }
+
+  /**
+   * Обойти все объекты запроса, не загружая их в память целиком.
+   *
+   * Строки читаются серверным курсором порциями по {@link #STREAM_FETCH_SIZE}, поэтому метод
+   * должен вызываться внутри транзакции. Порядок строк задает сортировка запроса
+   *
+   * @param query запрос
+   * @param spatial пространственное условие или {@code null}
+   * @param consumer обработчик объектов
+   */
+  public void stream(EntitySelectBuilder query, SpatialCondition spatial,
+                     Consumer<EntityObject> consumer) {
+    String built = query.build();
+    List<Object> args = new ArrayList<>(Arrays.asList(query.getParams()));
+    String sql = restrict(built, args, spatial);
+    log.trace("{} objects stream query:\n{}", query.getEntityType().getCodeName(), sql);
+    EntityObjectRowMapper rowMapper = new EntityObjectRowMapper(query);
+    ArgumentPreparedStatementSetter params = new ArgumentPreparedStatementSetter(args.toArray());
+    jdbcTemplate.query(con -> {
+      PreparedStatement statement = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                                                         ResultSet.CONCUR_READ_ONLY);
+      statement.setFetchSize(STREAM_FETCH_SIZE);
+      params.setValues(statement);
+      return statement;
+    }, new RowCallbackHandler() {
+      private int rowNum;
+
+      @Override
+      public void processRow(ResultSet rs) throws SQLException {
+        consumer.accept(rowMapper.mapRow(rs, rowNum++));
+      }
+    });
+  }
+
   public Page<SearchRecord> findRecords(EntitySelectBuilder query) {
     return findAll(query, new SearchRecordRowMapper(query.getSearchFields()));
   }
 
   public List<String> findUniqueValues(EntityType entityType, String codeName) {
-    Optional<Field> field = entityType.getField(codeName);
+    Optional<Field> field = CompiledEntityType.of(entityType).field(codeName);
     if (field.isPresent()) {
       String sql = "SELECT DISTINCT " + field.get().getCodeName()
           + " FROM " + entityTypeTable(entityType);
@@ -112,6 +428,39 @@ public class EntityObjectRepository {
     }
   }
 
+  /**
+   * Найти уникальные значения поля
+   *
+   * @param entityType класс объектов
+   * @param field поле
+   * @param scope запрос, ограничивающий объекты, или {@code null} для всех объектов класса
+   * @param filter фильтр значений
+   * @return уникальные значения, не больше {@link UniqueValuesFilter#getLimit()}, если он задан
+   */
+  public List<String> findUniqueValues(EntityType entityType, Field field,
+                                       EntitySelectBuilder scope, UniqueValuesFilter filter) {
+    String column = "t." + field.getCodeName();
+    List<Object> params = new ArrayList<>();
+    StringJoiner where = new StringJoiner(" and ", " where ", "").setEmptyValue("");
+    if (scope != null) {
+      where.add(format("t.id in (select q.id from ({0}) q)", scope.build()));
+      params.addAll(Arrays.asList(scope.getParams()));
+    }
+    if (StringUtils.isNotEmpty(filter.getPrefix())) {
+      where.add(column + "::text ilike ? escape '\\'");
+      params.add(filter.getPrefix().replaceAll("([\\\\%_])", "\\\\$1") + "%");
+    }
+    String sql = format("select {0}::text from {1} t{2} group by {0} order by {3}",
+                        column, entityTypeTable(entityType), where,
+                        filter.isByFrequency() ? "count(*) desc, 1" : "1");
+    if (filter.getLimit() != null) {
+      sql += " limit ?";
+      params.add(filter.getLimit());
+    }
+    log.trace("{} unique values query:\n{}", entityType.getCodeName(), sql);
+    return jdbcTemplate.queryForList(sql, String.class, params.toArray());
+  }
+
   /**
    * Загрузить объект только со стандартыми атрибутами
    *
@@ -135,25 +484,224 @@ public class EntityObjectRepository {
   }
 
   /**
-   * Загрузить объект со всеми атрибутами
+   * Загрузить объект со всеми атрибутами. Объект берется из {@link EntityObjectCache}
    *
    * @param entityType класс объектов
    * @param id идентификатор объекта
    * @return найденный объект
    */
   public Optional<EntityObject> findOne(EntityType entityType, int id) {
-    return findOne(entityType, id, entityType.getFields());
+    return objectCache.get(entityType.getCodeName(), id,
+                           () -> findOne(entityType, id, entityType.getFields()));
   }
 
   /**
-   * Загрузить объект со всеми атрибутами
+   * Загрузить объект со всеми атрибутами. Объект берется из {@link EntityObjectCache}
    *
    * @param entityType класс объектов
    * @param guid глобальный идентификатор объекта
    * @return найденный объект
    */
   public Optional<EntityObject> findOne(EntityType entityType, UUID guid) {
-    return findOne(entityType, guid, entityType.getFields());
+    return objectCache.get(entityType.getCodeName(), guid,
+                           () -> findOne(entityType, guid, entityType.getFields()));
+  }
+
+  /**
+   * Загрузить объекты запроса с указанными id и guid одним запросом
+   *
+   * @param query запрос без пагинации
+   * @param ids идентификаторы объектов
+   * @param guids глобальные идентификаторы объектов
+   * @return найденные объекты в произвольном порядке
+   */
+  public List<EntityObject> findAll(EntitySelectBuilder query, Collection<Integer> ids,
+                                    Collection<UUID> guids) {
+    if (ids.isEmpty() && guids.isEmpty()) {
+      return Collections.emptyList();
+    }
+    String sql = format("select q.* from ({0}) q where q.id = ANY(?) or q.guid = ANY(?)",
+                        query.build());
+    log.trace("{} objects batch select query:\n{}", query.getEntityType().getCodeName(), sql);
+    Object[] params = query.getParams();
+    return jdbcTemplate.query(con -> {
+      PreparedStatement statement = con.prepareStatement(sql);
+      new ArgumentPreparedStatementSetter(params).setValues(statement);
+      statement.setArray(params.length + 1, con.createArrayOf("integer", ids.toArray()));
+      statement.setArray(params.length + 2, con.createArrayOf("uuid", guids.toArray()));
+      return statement;
+    }, new EntityObjectRowMapper(query));
+  }
+
+  /**
+   * Загрузить связи объектов пакетно.
+   *
+   * Связанные id читаются одним запросом на поле для всех объектов, затем ссылки на связанные
+   * объекты каждого класса загружаются одним запросом. Количество запросов не зависит от количества
+   * объектов и значений связей. Ссылки читаются запросом {@code references}, поэтому связанные
+   * объекты, недоступные по правам, в значения связей не попадают. Значения связей не отмечаются
+   * изменениями объекта
+   *
+   * @param objects объекты, загруженные без полей связей
+   * @param fields поля связей
+   * @param references запрос объектов связанного класса по его кодовому имени
+   */
+  public void loadRelations(List<EntityObject> objects, Collection<RelationField> fields,
+                            Function<String, EntitySelectBuilder> references) {
+    if (objects.isEmpty() || fields.isEmpty()) {
+      return;
+    }
+    Set<Integer> ids = objects.stream().map(EntityObject::getId).collect(Collectors.toSet());
+    Map<RelationField, Map<Integer, List<Integer>>> links = new LinkedHashMap<>();
+    Map<String, Set<Integer>> targets = new HashMap<>();
+    for (RelationField field : fields) {
+      Map<Integer, List<Integer>> fieldLinks = findLinks(field, ids);
+      links.put(field, fieldLinks);
+      Set<Integer> related = targets.computeIfAbsent(field.getRelates(), k -> new HashSet<>());
+      fieldLinks.values().forEach(related::addAll);
+    }
+    Map<String, Map<Integer, EntityObject>> found = new HashMap<>();
+    targets.forEach((type, related) -> found.put(type, findReferences(references.apply(type),
+                                                                      related)));
+
+    for (EntityObject object : objects) {
+      links.forEach((field, fieldLinks) -> {
+        Map<Integer, EntityObject> typeReferences = found.get(field.getRelates());
+        List<Attribute> values = new ArrayList<>();
+        for (Integer related : fieldLinks.getOrDefault(object.getId(), Collections.emptyList())) {
+          EntityObject reference = typeReferences.get(related);
+          if (reference != null) {
+            values.add(new RelationAttribute(reference));
+          }
+        }
+        if (!values.isEmpty()) {
+          object.addLoaded(field.getCodeName(), values);
+        }
+      });
+    }
+  }
+
+  /**
+   * Загрузить упрощенные геометрии объектов пакетно, одним запросом на поле
+   *
+   * @param objects объекты, загруженные без геометрических полей
+   * @param fields одиночные геометрические поля
+   * @param srid код проекции результата или {@code null} для проекции поля
+   * @param options параметры упрощения и точности
+   */
+  public void loadGeometries(List<EntityObject> objects, Collection<GeometryField> fields,
+                             Integer srid, ObjectQueryOptions options) {
+    if (objects.isEmpty() || fields.isEmpty()) {
+      return;
+    }
+    Map<Integer, EntityObject> byId = objects.stream()
+        .collect(Collectors.toMap(EntityObject::getId, object -> object, (a, b) -> a));
+    Double tolerance = options.getSimplifyTolerance() != null
+        && options.getSimplifyTolerance() > 0 ? options.getSimplifyTolerance() : null;
+    int digits = options.getPrecision() == null || options.getPrecision() < 0
+        ? MAX_DECIMAL_DIGITS : Math.min(options.getPrecision(), MAX_DECIMAL_DIGITS);
+    for (GeometryField field : fields) {
+      String geometry = tolerance == null ? "ST_Transform({0}, ?)"
+          : "ST_SimplifyPreserveTopology(ST_Transform({0}, ?), ?)";
+      String sql = format("select id, ST_AsText(g, ?) from (select id, " + geometry
+                              + " as g from {1} where id = ANY(?)) t where g is not null",
+                          field.getCodeName(), entityTypeTable(field.getEntityType()));
+      int fieldSrid = srid == null ? field.getCrs().intValue() : srid;
+      log.trace("{} geometry query:\n{}", field.getCodeName(), sql);
+      try {
+        jdbcTemplate.query(con -> {
+          PreparedStatement statement = con.prepareStatement(sql);
+          int index = 1;
+          statement.setInt(index++, digits);
+          statement.setInt(index++, fieldSrid);
+          if (tolerance != null) {
+            statement.setDouble(index++, tolerance);
+          }
+          statement.setArray(index, con.createArrayOf("integer", byId.keySet().toArray()));
+          return statement;
+        }, (RowCallbackHandler) rs -> {
+          byId.get(rs.getInt(1)).addLoaded(field.getCodeName(), Collections.singletonList(
+              new GeometryAttribute(rs.getString(2))));
+        });
+      } catch (DataAccessException e) {
+        throw new EntityGeometryException("Geometry query sql error", e);
+      }
+    }
+  }
+
+  /**
+   * Связанные id по id объектов
+   */
+  private Map<Integer, List<Integer>> findLinks(RelationField field, Collection<Integer> ids) {
+    String sql;
+    if (hasRelationTable.test(field)) {
+      sql = format("select {0}, {1} from {2} where {0} = ANY(?) order by {0}, {1}",
+                   fieldSrcColumn(field), fieldDstColumn(field), relationTable(field));
+    } else {
+      sql = format("select {0}, id from {1} where {0} = ANY(?) order by {0}, id",
+                   field.getReverseFieldCode(), entityTypeTable(field.getRelates()));
+    }
+    log.trace("{} attribute links query:\n{}", field.getCodeName(), sql);
+    Map<Integer, List<Integer>> links = new HashMap<>();
+    queryWithIds(sql, ids, rs -> {
+      links.computeIfAbsent(rs.getInt(1), k -> new ArrayList<>()).add(rs.getInt(2));
+    });
+    return links;
+  }
+
+  /**
+   * Ссылки на объекты класса: id, guid, имя и статус
+   *
+   * @param query запрос объектов связанного класса
+   * @param ids id связанных объектов
+   */
+  private Map<Integer, EntityObject> findReferences(EntitySelectBuilder query,
+                                                    Collection<Integer> ids) {
+    query.withFields(ID, GUID, NAME, STATUS);
+    return findAll(query, ids, Collections.emptyList()).stream()
+        .collect(Collectors.toMap(EntityObject::getId, reference -> reference, (a, b) -> a));
+  }
+
+  private void queryWithIds(String sql, Collection<Integer> ids, RowCallbackHandler handler) {
+    jdbcTemplate.query(con -> {
+      PreparedStatement statement = con.prepareStatement(sql);
+      statement.setArray(1, con.createArrayOf("integer", ids.toArray()));
+      return statement;
+    }, handler);
+  }
+
+  /**
+   * Получить только вложения объекта
+   *
+   * @param entityType класс объектов
+   * @param scope запрос, ограничивающий объекты (например правилами доступа сервиса)
+   * @param id идентификатор объекта
+   * @return вложения или пустое значение, если объект не найден
+   */
+  public Optional<List<ObjectAttachment>> findAttachments(EntityType entityType,
+                                                          EntitySelectBuilder scope, int id) {
+    String sql = format("select t.{0} from {1} t where t.id = ? "
+                            + "and t.id in (select q.id from ({2}) q)",
+                        ATTACHMENTS.getCodeName(), entityTypeTable(entityType), scope.build());
+    List<Object> params = new ArrayList<>();
+    params.add(id);
+    params.addAll(Arrays.asList(scope.getParams()));
+    log.trace("{} attachments query:\n{}", entityType.getCodeName(), sql);
+    return jdbcTemplate.query(sql, (rs, rowNum) -> {
+      String json = rs.getString(1);
+      return json == null ? new ArrayList<ObjectAttachment>() : mapJsonToAttachments(json);
+    }, params.toArray()).stream().findFirst();
+  }
+
+  /**
+   * Узнать, есть ли объекты, удовлетворяющие запросу
+   *
+   * @param query запрос
+   */
+  public boolean exists(EntitySelectBuilder query) {
+    String sql = format("select exists ({0})", query.build());
+    log.trace("{} objects exists query:\n{}", query.getEntityType().getCodeName(), sql);
+    return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, query.getParams()));
   }
 
   /**
@@ -224,14 +772,92 @@ public class EntityObjectRepository {
    * @return сохраненный объект
    */
   public EntityObject save(@NonNull EntityType entityType, @NonNull EntityObject object) {
+    List<Extent> bounds;
     if (object.isNew()) {
       insert(entityType, object);
+      bounds = changedBounds(entityType, object, false);
     } else {
+      bounds = changedBounds(entityType, object, true);
       update(entityType, object);
     }
+    publishChanged(entityType, Collections.singletonList(object), bounds);
     return object;
   }
 
+  /**
+   * Создать несколько новых объектов.
+   *
+   * Объекты группируются по набору заполненных полей, каждая группа вставляется JDBC-пакетами
+   * с получением сгенерированных идентификаторов. Связи всех объектов вставляются пакетно по
+   * каждому полю-связи
+   *
+   * @param entityType класс объектов
+   * @param objects новые объекты
+   * @return сохраненные объекты
+   */
+  public List<EntityObject> insertAll(@NonNull EntityType entityType,
+                                      @NonNull List<EntityObject> objects) {
+    String tableName = entityTypeTable(entityType);
+    List<PendingRow> rows = new ArrayList<>(objects.size());
+    for (EntityObject object : objects) {
+      object.setEntityType(entityType.getCodeName());
+      Map<Field, Object> valueMap = fullAttributeValueMap(entityType, object);
+      valueMap.remove(ID);
+      rows.add(new PendingRow(object, valueMap));
+    }
+
+    groupByTemplate(tableName, rows).forEach(this::insertInnerFields);
+    collectRelations(rows).forEach(this::insertRelations);
+    publishChanged(entityType, objects, changedBounds(entityType, ids(objects)));
+    log.debug("created {} objects {}", objects.size(), entityType.getCodeName());
+    return objects;
+  }
+
+  /**
+   * Загрузить новые объекты через {@code COPY ... FROM STDIN}.
+   *
+   * Идентификаторы объектов заранее выделяются из последовательности таблицы, затем каждая
+   * группа объектов с одинаковым набором заполненных полей передается одной командой COPY в
+   * формате CSV. Геометрия в WKT передается как EWKT, в (E)WKB - как EWKB, в обоих случаях с
+   * проекцией поля. Строки таблиц связей загружаются также через COPY, обратные поля обновляются
+   * пакетно. Объекты с геометрией в GeoJSON, которую COPY принять не может, сохраняются через
+   * {@link #insertAll}
+   *
+   * @param entityType класс объектов
+   * @param objects новые объекты
+   * @return сохраненные объекты
+   */
+  public List<EntityObject> copyAll(@NonNull EntityType entityType,
+                                    @NonNull List<EntityObject> objects) {
+    String tableName = entityTypeTable(entityType);
+    List<PendingRow> rows = new ArrayList<>(objects.size());
+    List<EntityObject> notCopyable = new ArrayList<>();
+    for (EntityObject object : objects) {
+      object.setEntityType(entityType.getCodeName());
+      Map<Field, Object> valueMap = fullAttributeValueMap(entityType, object);
+      valueMap.remove(ID);
+      if (hasGeoJsonGeometry(valueMap)) {
+        notCopyable.add(object);
+      } else {
+        rows.add(new PendingRow(object, valueMap));
+      }
+    }
+
+    if (!rows.isEmpty()) {
+      allocateIds(tableName, rows);
+      groupByTemplate(tableName, rows).values().forEach(group -> copyInnerFields(tableName, group));
+      collectRelations(rows).forEach(this::copyRelations);
+      List<EntityObject> copied = rows.stream().map(PendingRow::getObject)
+          .collect(Collectors.toList());
+      publishChanged(entityType, copied, changedBounds(entityType, ids(copied)));
+    }
+    if (!notCopyable.isEmpty()) {
+      insertAll(entityType, notCopyable);
+    }
+    log.debug("copied {} objects {}", objects.size(), entityType.getCodeName());
+    return objects;
+  }
+
   /**
    * Удалить объект
    *
@@ -242,19 +868,167 @@ public class EntityObjectRepository {
     String pattern = "delete from {0} where id = ?";
     String sql = format(pattern, entityTypeTable(entityType));
     log.trace("object {}#{} remove query:\n{}", entityType.getCodeName(), object.getId());
+    List<Extent> bounds = changedBounds(entityType, Collections.singletonList(object.getId()));
     jdbcTemplate.update(sql, object.getId());
+    publishChanged(entityType, Collections.singletonList(object), bounds);
+  }
+
+  /**
+   * Сообщить об изменении объектов. Обработчики, зависящие от транзакции, получают событие после
+   * ее завершения
+   */
+  private void publishChanged(EntityType entityType, List<EntityObject> objects,
+                              List<Extent> bounds) {
+    publishChanged(entityType.getCodeName(), ids(objects), bounds);
+  }
+
+  /**
+   * Сообщить об изменении связей объектов. Геометрии объектов при этом не меняются
+   */
+  private void publishChanged(String entityType, Collection<Integer> ids) {
+    publishChanged(entityType, ids, Collections.emptyList());
+  }
+
+  private void publishChanged(String entityType, Collection<Integer> ids, List<Extent> bounds) {
+    if (!ids.isEmpty()) {
+      eventPublisher.publishEvent(new EntityObjectsChangedEvent(entityType, ids, bounds));
+    }
+  }
+
+  private static List<Integer> ids(List<EntityObject> objects) {
+    return objects.stream().map(EntityObject::getId).collect(Collectors.toList());
+  }
+
+  /**
+   * Охваты в EPSG:4326 одиночных геометрий сохраняемого объекта для точечного сброса кэша
+   * тайлов.
+   *
+   * Охваты новых значений считаются по геометриям объекта без чтения таблицы. Прежние значения
+   * читаются из таблицы до изменения, только если геометрия изменена или ее нет в объекте. Все
+   * охваты получаются одним запросом, который выполняется, только если в кэше есть тайлы класса
+   *
+   * @param stored объект уже есть в таблице
+   * @return охваты или {@code null}, если тайлов класса в кэше нет
+   */
+  private List<Extent> changedBounds(EntityType entityType, EntityObject object,
+                                     boolean stored) {
+    if (!tileCache.hasTiles(entityType.getCodeName())) {
+      return null;
+    }
+    Map<Field, Object> valueMap = fullAttributeValueMap(entityType, object);
+    List<String> boxes = new ArrayList<>();
+    List<Object> params = new ArrayList<>();
+    for (GeometryField field : CompiledEntityType.of(entityType).getGeometryFields()) {
+      if (field.isMultiple()) {
+        continue;
+      }
+      Object value = valueMap.get(field);
+      if (value != null) {
+        boxes.add(format("select ST_SetSRID(Box2D({0})::geometry, {1,number,#}) as b",
+                         prepareParam(field, value), field.getCrs()));
+        params.add(((Geometry) value).getGeometry());
+      }
+      if (stored && (value == null || object.isChanged(field.getCodeName()))) {
+        boxes.add(format("select ST_SetSRID(Box2D({0})::geometry, {1,number,#}) as b from {2} "
+                             + "where id = ?",
+                         field.getCodeName(), field.getCrs(), entityTypeTable(entityType)));
+        params.add(object.getId());
+      }
+    }
+    if (boxes.isEmpty()) {
+      return Collections.emptyList();
+    }
+    String sql = "select ST_XMin(b) as min_x, ST_YMin(b) as min_y, ST_XMax(b) as max_x, "
+        + "ST_YMax(b) as max_y from (select ST_Transform(b, 4326) as b from ("
+        + String.join(" union all ", boxes) + ") s where b is not null) e";
+    log.trace("{} changed bounds query:\n{}", entityType.getCodeName(), sql);
+    return jdbcTemplate.query(sql, (rs, rowNum) -> readExtent(rs), params.toArray());
+  }
+
+  /**
+   * Охваты в EPSG:4326 одиночных геометрий объектов для точечного сброса кэша тайлов.
+   *
+   * Запрос выполняется, только если в кэше есть тайлы класса. Иначе возвращается {@code null}, и
+   * сбрасываются все тайлы класса, в том числе построенные до завершения транзакции
+   */
+  private List<Extent> changedBounds(EntityType entityType, Collection<Integer> ids) {
+    if (ids.isEmpty() || !tileCache.hasTiles(entityType.getCodeName())) {
+      return null;
+    }
+    List<GeometryField> fields = CompiledEntityType.of(entityType).getGeometryFields().stream()
+        .filter(field -> !field.isMultiple())
+        .collect(Collectors.toList());
+    if (fields.isEmpty()) {
+      return Collections.emptyList();
+    }
+    String boxes = fields.stream()
+        .map(field -> format("select ST_Transform(ST_SetSRID(Box2D({0})::geometry, "
+                                 + "{1,number,#}), 4326) as b from {2} "
+                                 + "where id = ANY(?) and {0} is not null",
+                             field.getCodeName(), field.getCrs(), entityTypeTable(entityType)))
+        .collect(Collectors.joining(" union all "));
+    String sql = "select ST_XMin(b) as min_x, ST_YMin(b) as min_y, ST_XMax(b) as max_x, "
+        + "ST_YMax(b) as max_y from (" + boxes + ") e";
+    log.trace("{} changed bounds query:\n{}", entityType.getCodeName(), sql);
+    return jdbcTemplate.query(con -> {
+      PreparedStatement statement = con.prepareStatement(sql);
+      Array array = con.createArrayOf("integer", ids.toArray());
+      for (int i = 1; i <= fields.size(); i++) {
+        statement.setArray(i, array);
+      }
+      return statement;
+    }, (rs, rowNum) -> readExtent(rs));
   }
 
   public Point entityCentroid(GeometryField field, long objectId, int srid) {
-    String tableName = DbNameProvider.entityTypeTable(field.getEntityType());
-    String geomCol = field.getCodeName();
-    return queryColumnCentroid(tableName, geomCol, objectId, srid);
+    return entityCentroids(field, Collections.singletonList(objectId), srid).get(objectId);
   }
 
   public Extent entityExtent(GeometryField field, long objectId, int srid) {
-    String tableName = DbNameProvider.entityTypeTable(field.getEntityType());
-    String geomCol = field.getCodeName();
-    return queryColumnExtent(tableName, geomCol, objectId, srid);
+    return entityExtents(field, Collections.singletonList(objectId), srid).get(objectId);
+  }
+
+  /**
+   * Получить центроиды геометрий нескольких объектов одним запросом
+   *
+   * @param field геометрическое поле
+   * @param objectIds идентификаторы объектов
+   * @param srid код проекции результата
+   * @return центроиды по id объекта. Объекты без геометрии отсутствуют
+   */
+  public Map<Long, Point> entityCentroids(GeometryField field, Collection<Long> objectIds,
+                                          int srid) {
+    String sql = format("select id, ST_X(c) as x, ST_Y(c) as y from ("
+                            + "select id, ST_Centroid(ST_Transform({0}, ?)) as c from {1} "
+                            + "where id = ANY(?)) t where not ST_IsEmpty(c)",
+                        field.getCodeName(), entityTypeTable(field.getEntityType()));
+    Map<Long, Point> centroids = new HashMap<>();
+    queryGeometry(sql, objectIds, srid, "Centroid query sql error", rs -> {
+      centroids.put(rs.getLong("id"), new Point(rs.getDouble("x"), rs.getDouble("y")));
+    });
+    return centroids;
+  }
+
+  /**
+   * Получить охваты геометрий нескольких объектов одним запросом
+   *
+   * @param field геометрическое поле
+   * @param objectIds идентификаторы объектов
+   * @param srid код проекции результата
+   * @return охваты по id объекта. Объекты без геометрии отсутствуют
+   */
+  public Map<Long, Extent> entityExtents(GeometryField field, Collection<Long> objectIds,
+                                         int srid) {
+    String sql = format("select id, ST_XMin(b) as min_x, ST_YMin(b) as min_y, "
+                            + "ST_XMax(b) as max_x, ST_YMax(b) as max_y from ("
+                            + "select id, Box2D(ST_Transform({0}, ?)) as b from {1} "
+                            + "where id = ANY(?)) t where b is not null",
+                        field.getCodeName(), entityTypeTable(field.getEntityType()));
+    Map<Long, Extent> extents = new HashMap<>();
+    queryGeometry(sql, objectIds, srid, "Extent query sql error", rs -> {
+      extents.put(rs.getLong("id"), readExtent(rs));
+    });
+    return extents;
   }
 
   /**
@@ -264,7 +1038,8 @@ public class EntityObjectRepository {
    * @return количество объектов класса
    */
   public int count(EntityType entityType) {
-    return count(selectBuilderFactory.newBuilderUnsecured(entityType));
+    return queryCaches.count(null, entityType.getCodeName(), null,
+                             () -> count(selectBuilderFactory.newBuilderUnsecured(entityType)));
   }
 
   /**
@@ -278,76 +1053,142 @@ public class EntityObjectRepository {
         .stream().findFirst().orElse(0);
   }
 
-  private Point queryColumnCentroid(String tableName, String geomCol, long objectId, int srid) {
-    String sql = String
-        .format(
-            "select ST_AsText(ST_Centroid(ST_Transform(%s, ?))) as cnt from %s where id = ?",
-            geomCol, tableName);
-    return queryCentroid(sql, objectId, srid);
+  /**
+   * Получить количество объектов с пространственным условием
+   *
+   * @param scope запрос id объектов
+   * @param spatial пространственное условие
+   * @return количество объектов
+   */
+  public int count(EntitySelectBuilder scope, SpatialCondition spatial) {
+    String scopeSql = scope.build();
+    List<Object> params = new ArrayList<>(Arrays.asList(scope.getParams()));
+    String sql = format("select count(*) from ({0}) q", restrict(scopeSql, params, spatial));
+    log.trace("objects count query:\n{}", sql);
+    return jdbcTemplate.queryForObject(sql, Integer.class, params.toArray());
   }
 
-  private Point queryCentroid(String sql, long objectId, int srid) {
-    try (Connection connection = jdbcTemplate.getDataSource()
-        .getConnection(); PreparedStatement pstmt = connection.prepareStatement(sql)) {
-      pstmt.setInt(1, srid);
-      pstmt.setLong(2, objectId);
-      try (ResultSet rs = pstmt.executeQuery()) {
-        if (rs.next()) {
-          return parseCentroid(rs.getString("cnt"));
-        }
-        return null;
-      }
-    } catch (SQLException e) {
-      throw new EntityGeometryException("Centroid query sql error", e);
+  /**
+   * Получить общий охват геометрий объектов запроса
+   *
+   * @param scope запрос, ограничивающий объекты
+   * @param field геометрическое поле
+   * @param srid код проекции результата
+   * @param spatial пространственное условие или {@code null}
+   * @return охват или {@code null}, если у объектов нет геометрии. Охват не меньше охвата
+   *     геометрий, переведенных в проекцию результата по одной, с погрешностью изгиба сторон
+   *     между вершинами: при {@link #EXTENT_SEGMENTS} частях на сторону это доли процента
+   *     размера охвата. Охват может быть больше точного, так как переводится весь прямоугольник
+   */
+  public Extent extent(EntitySelectBuilder scope, GeometryField field, int srid,
+                       SpatialCondition spatial) {
+    // Охват считается в проекции колонки, в проекцию результата переводится только он сам.
+    // Стороны охвата предварительно делятся на EXTENT_SEGMENTS частей, чтобы их изгиб в
+    // нелинейной проекции результата попал в охват
+    String scopeSql = scope.build();
+    List<Object> params = new ArrayList<>();
+    params.add(srid);
+    params.addAll(Arrays.asList(scope.getParams()));
+    String spatialWhere = spatial == null ? "" : " and " + spatial.where("t", params);
+    String sql = format("select ST_XMin(b) as min_x, ST_YMin(b) as min_y, "
+                            + "ST_XMax(b) as max_x, ST_YMax(b) as max_y from ("
+                            + "select ST_Transform(case when l > 0 then ST_Segmentize(e, l / {5}) "
+                            + "else e end, ?) as b from ("
+                            + "select e, greatest(ST_XMax(e) - ST_XMin(e), ST_YMax(e) - ST_YMin(e))"
+                            + " as l from ("
+                            + "select ST_SetSRID(ST_Extent(t.{0})::geometry, {3,number,#}) as e "
+                            + "from {1} t where t.id in (select q.id from ({2}) q){4}"
+                            + ") x) y) z where b is not null",
+                        field.getCodeName(), entityTypeTable(field.getEntityType()),
+                        scopeSql, field.getCrs(), spatialWhere, EXTENT_SEGMENTS);
+    log.trace("{} extent query:\n{}", field.getCodeName(), sql);
+    try {
+      return jdbcTemplate.query(sql, (rs, rowNum) -> readExtent(rs), params.toArray())
+          .stream()
+          .findFirst()
+          .orElse(null);
+    } catch (DataAccessException e) {
+      throw new EntityGeometryException("Extent query sql error", e);
     }
   }
 
-  private Point parseCentroid(String raw) {
-    String[] coord = StringUtils.substringBetween(raw, "(", ")").split(" ");
-    double x = Double.parseDouble(coord[0]);
-    double y = Double.parseDouble(coord[1]);
-    return new Point(x, y);
-  }
-
-  private Extent queryColumnExtent(String tableName, String geomCol, long objectId, int srid) {
-    String sql = String.format("select ST_Extent(ST_Transform(%s, ?)) as ext from %s where id = ?",
-                               geomCol, tableName);
-    return queryExtent(sql, objectId, srid);
+  /**
+   * Получить векторный тайл (Mapbox Vector Tile) с объектами запроса
+   *
+   * @param scope запрос, ограничивающий объекты
+   * @param field геометрическое поле
+   * @param properties поля, значения которых попадают в свойства объектов тайла
+   * @param layerName имя слоя в тайле
+   * @param z масштаб
+   * @param x номер тайла по горизонтали
+   * @param y номер тайла по вертикали
+   * @return тайл, пустой если в нем нет объектов
+   */
+  public byte[] tile(EntitySelectBuilder scope, GeometryField field, Collection<Field> properties,
+                     String layerName, int z, int x, int y) {
+    String columns = properties.stream()
+        .map(property -> tileColumn(property) + " as " + property.getCodeName())
+        .collect(Collectors.joining(", "));
+    String sql = format("select ST_AsMVT(mvt, ?, {0,number,#}, ''{1}'') from ("
+                            + "select {2}ST_AsMVTGeom(ST_Transform(t.{3}, 3857), "
+                            + "ST_TileEnvelope(?, ?, ?), {0,number,#}, {4,number,#}, true) as {1} "
+                            + "from {5} t where t.{3} && ST_Transform("
+                            + "ST_TileEnvelope(?, ?, ?, margin => ?), {6,number,#}) "
+                            + "and t.id in (select q.id from ({7}) q)) mvt where {1} is not null",
+                        TILE_EXTENT, TILE_GEOMETRY, columns.isEmpty() ? "" : columns + ", ",
+                        field.getCodeName(), TILE_BUFFER,
+                        entityTypeTable(field.getEntityType()), field.getCrs(), scope.build());
+    List<Object> params = new ArrayList<>(Arrays.asList(layerName, z, x, y, z, x, y,
+                                                        (double) TILE_BUFFER / TILE_EXTENT));
+    params.addAll(Arrays.asList(scope.getParams()));
+    log.trace("{} tile {}/{}/{} query:\n{}", layerName, z, x, y, sql);
+    try {
+      byte[] tile = jdbcTemplate.queryForObject(sql, byte[].class, params.toArray());
+      return tile == null ? new byte[0] : tile;
+    } catch (DataAccessException e) {
+      throw new EntityGeometryException("Tile query sql error", e);
+    }
   }
 
-  private Extent queryExtent(String sql, long objectId, int srid)
-      throws EntityGeometryException {
-    try (Connection connection = jdbcTemplate.getDataSource()
-        .getConnection(); PreparedStatement pstmt = connection.prepareStatement(sql)) {
-      pstmt.setInt(1, srid);
-      pstmt.setLong(2, objectId);
-      try (ResultSet rs = pstmt.executeQuery()) {
-        if (rs.next()) {
-          return parseExtent(rs.getString("ext"), srid);
-        }
-        return null;
-      }
-    } catch (SQLException e) {
-      throw new EntityGeometryException("Extent query sql error", e);
+  /**
+   * Выражение значения поля для свойств векторного тайла. Типы, которые не поддерживаются
+   * {@code ST_AsMVT}, передаются строкой
+   */
+  private static String tileColumn(Field field) {
+    switch (field.getFieldType()) {
+      case NUMERIC:
+      case BOOLEAN:
+      case STRING:
+        return "t." + field.getCodeName();
+      default:
+        return "t." + field.getCodeName() + "::text";
     }
   }
 
-  private Extent parseExtent(String rawExtent, int srid) {
-    if (StringUtils.isBlank(rawExtent)) {
-      return null;
+  private void queryGeometry(String sql, Collection<Long> objectIds, int srid, String error,
+                             RowCallbackHandler handler) {
+    if (objectIds.isEmpty()) {
+      return;
     }
-    if (!rawExtent
-        .matches("BOX\\(-?\\d+(\\.\\d+)? -?\\d+(\\.\\d+)?,-?\\d+(\\.\\d+)? -?\\d+(\\.\\d+)?\\)")) {
-      throw new EntityGeometryException("Extent doesn't matches pattern: " + rawExtent);
+    log.trace("geometry query:\n{}", sql);
+    try {
+      jdbcTemplate.query(con -> {
+        PreparedStatement statement = con.prepareStatement(sql);
+        statement.setInt(1, srid);
+        statement.setArray(2, con.createArrayOf("bigint", objectIds.toArray()));
+        return statement;
+      }, handler);
+    } catch (DataAccessException e) {
+      throw new EntityGeometryException(error, e);
     }
+  }
+
+  private static Extent readExtent(ResultSet rs) throws SQLException {
     Extent result = new Extent();
-    String[] coordinates = rawExtent.substring(4, rawExtent.length() - 1).split(",");
-    String min[] = coordinates[0].split(" ");
-    String max[] = coordinates[1].split(" ");
-    result.setMinX(Double.parseDouble(min[0]));
-    result.setMinY(Double.parseDouble(min[1]));
-    result.setMaxX(Double.parseDouble(max[0]));
-    result.setMaxY(Double.parseDouble(max[1]));
+    result.setMinX(rs.getDouble("min_x"));
+    result.setMinY(rs.getDouble("min_y"));
+    result.setMaxX(rs.getDouble("max_x"));
+    result.setMaxY(rs.getDouble("max_y"));
     return result;
   }
 
@@ -358,7 +1199,7 @@ public class EntityObjectRepository {
 
   private EntitySelectBuilder preFind(EntityType entityType, List<BaseField> fields) {
     return selectBuilderFactory.newBuilder(entityType)
-        .withFields(standardFields(entityType))
+        .withFields(CompiledEntityType.of(entityType).getStandardFieldArray())
         .withFields(fields.toArray(new Field[0]));
   }
 
@@ -372,6 +1213,84 @@ public class EntityObjectRepository {
     }
   }
 
+  /**
+   * Запрос страницы. Без пространственного условия это запрос построителя с его сортировкой и
+   * пагинацией. С условием запрос построителя без пагинации фильтруется по id во внешнем
+   * запросе, который берет offset/limit страницы. Внешний запрос не сортирует строки: PostgreSQL
+   * опускает условие под сортировку подзапроса и сохраняет ее порядок
+   */
+  private static String pageSql(EntitySelectBuilder query, List<Object> params,
+                                SpatialCondition spatial) {
+    if (spatial == null) {
+      String sql = query.build();
+      params.addAll(Arrays.asList(query.getParams()));
+      return sql;
+    }
+    Pageable pageable = query.getPageable();
+    String sql;
+    query.pageable(null);
+    try {
+      sql = query.build();
+      params.addAll(Arrays.asList(query.getParams()));
+    } finally {
+      query.pageable(pageable);
+    }
+    String pageSql = restrict(sql, params, spatial) + " offset ? limit ?";
+    params.add(pageable.getOffset());
+    params.add(pageable.getPageSize());
+    return pageSql;
+  }
+
+  /**
+   * Добавить в список колонок запроса общее количество строк. Окно без разбиения вычисляется до
+   * offset/limit запроса. В запрос с distinct колонка не добавляется: окно считалось бы до
+   * устранения повторов
+   *
+   * @return запрос с колонкой количества или {@code null}, если колонку добавить нельзя
+   */
+  private static String withTotal(String sql) {
+    String select = "select ";
+    String trimmed = sql.trim();
+    if (!trimmed.regionMatches(true, 0, select, 0, select.length())
+        || trimmed.regionMatches(true, select.length(), "distinct", 0, "distinct".length())) {
+      return null;
+    }
+    return format("select count(*) over() as {0}, {1}", TOTAL_COLUMN,
+                  trimmed.substring(select.length()));
+  }
+
+  /**
+   * Пагинация с той же позицией начала и одной лишней строкой
+   */
+  private static Pageable lookAhead(Pageable pageable) {
+    int offset = pageable.getOffset();
+    return new PageRequest(pageable.getPageNumber(), pageable.getPageSize() + 1) {
+      @Override
+      public int getOffset() {
+        return offset;
+      }
+    };
+  }
+
+  /**
+   * Ограничить запрос пространственным условием. Параметры условия добавляются в {@code params}
+   * после параметров запроса. Внешний запрос не сортирует строки и сохраняет порядок запроса
+   */
+  private static String restrict(String sql, List<Object> params, SpatialCondition spatial) {
+    return spatial == null ? sql
+        : format("select q.* from ({0}) q where {1}", sql, spatial.idIn("q.id", params));
+  }
+
+  /**
+   * Оценить количество строк запроса по плану PostgreSQL
+   */
+  private long estimateCount(String sql, List<Object> params) {
+    String plan = jdbcTemplate.queryForObject("explain (format json) " + sql, String.class,
+                                              params.toArray());
+    Matcher matcher = PLAN_ROWS.matcher(plan == null ? "" : plan);
+    return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+  }
+
   private <T> List<T> findList(EntitySelectBuilder query, RowMapper<T> rowMapper) {
     String sql = query.build();
     log.trace("objects select query:\n{}", sql);
@@ -393,36 +1312,243 @@ public class EntityObjectRepository {
   }
 
   private int insertInnerFields(EntityObject object, Map<Field, Object> valueMap) {
+    List<Map.Entry<Field, Object>> columns = innerColumns(valueMap, true);
+    StatementTemplate template = template(entityTypeTable(object.getEntityType()), false, columns);
+    List<Object> values = columnValues(columns);
+    log.trace("{} insert query is:\n{}", object.getEntityType(), template.getSql());
+
     GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
     jdbcTemplate.update(con -> {
-      String format = "insert into {0} ({1}) VALUES ({2})";
-      StringJoiner columns = new StringJoiner(",");
-      StringJoiner parameters = new StringJoiner(",");
-      List<Object> values = new ArrayList<>();
-      valueMap.entrySet().stream()
-          .filter(e -> innerField.test(e.getKey()))
-          .filter(e -> e.getValue() != null)
-          .forEach(entry -> {
-            Field field = entry.getKey();
-            columns.add(field.getCodeName());
-            parameters.add(prepareParam(field, entry.getValue()));
-            values.add(prepareParamValue(con, field, entry.getValue()));
-          });
-
-      String tableName = entityTypeTable(object.getEntityType());
-      String query = format(format, tableName, columns, parameters);
-      log.trace("{} insert query is:\n{}", object.getEntityType(), query);
-
-      PreparedStatement statement = con.prepareStatement(query, new String[]{ID.getCodeName()});
-      for (int i = 0; i < values.size(); i++) {
-        statement.setObject(i + 1, values.get(i));
-      }
+      PreparedStatement statement = con
+          .prepareStatement(template.getSql(), new String[]{ID.getCodeName()});
+      template.bind(statement, values);
       return statement;
     }, keyHolder);
 
     return keyHolder.getKey().intValue();
   }
 
+  private void insertInnerFields(StatementTemplate template, List<PendingRow> group) {
+    log.trace("batch insert query is:\n{}", template.getSql());
+    jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+      try (PreparedStatement statement = con
+          .prepareStatement(template.getSql(), new String[]{ID.getCodeName()})) {
+        for (int from = 0; from < group.size(); from += INSERT_BATCH_SIZE) {
+          List<PendingRow> batch =
+              group.subList(from, Math.min(from + INSERT_BATCH_SIZE, group.size()));
+          for (PendingRow row : batch) {
+            template.bind(statement, columnValues(row.getColumns()));
+            statement.addBatch();
+          }
+          statement.executeBatch();
+          try (ResultSet keys = statement.getGeneratedKeys()) {
+            for (PendingRow row : batch) {
+              keys.next();
+              row.getObject().setId(keys.getInt(1));
+            }
+          }
+        }
+      }
+      return null;
+    });
+  }
+
+  private Map<StatementTemplate, List<PendingRow>> groupByTemplate(String tableName,
+                                                                   List<PendingRow> rows) {
+    Map<StatementTemplate, List<PendingRow>> groups = new LinkedHashMap<>();
+    rows.forEach(row -> groups
+        .computeIfAbsent(template(tableName, false, row.getColumns()), k -> new ArrayList<>())
+        .add(row));
+    return groups;
+  }
+
+  private void allocateIds(String tableName, List<PendingRow> rows) {
+    List<Integer> ids = jdbcTemplate.queryForList(
+        "select nextval(pg_get_serial_sequence(?, ?)) from generate_series(1, ?)",
+        Integer.class, tableName, ID.getCodeName(), rows.size());
+    Iterator<Integer> iterator = ids.iterator();
+    rows.forEach(row -> row.getObject().setId(iterator.next()));
+  }
+
+  private void copyInnerFields(String tableName, List<PendingRow> group) {
+    StringJoiner columns = new StringJoiner(",");
+    columns.add(ID.getCodeName());
+    group.get(0).getColumns().forEach(column -> columns.add(column.getKey().getCodeName()));
+
+    String sql = format("copy {0} ({1}) from stdin with (format csv)", tableName, columns);
+    copy(sql, group, pending -> {
+      CsvCopyRow row = new CsvCopyRow().add(pending.getObject().getId());
+      pending.getColumns()
+          .forEach(column -> row.add(copyValue(column.getKey(), column.getValue())));
+      return row;
+    });
+  }
+
+  private void copyRelations(RelationField field, List<Object[]> rows) {
+    if (rows.isEmpty() || !hasRelationTable.test(field)) {
+      insertRelations(field, rows);
+      return;
+    }
+    String sql = format("copy {0} ({1}, {2}) from stdin with (format csv)",
+                        relationTable(field), fieldSrcColumn(field), fieldDstColumn(field));
+    copy(sql, rows, r -> new CsvCopyRow().add(r[0]).add(r[1]));
+    publishChanged(field.getRelates(), relatedIds(rows));
+  }
+
+  private <T> void copy(String sql, List<T> items, Function<T, CsvCopyRow> rowMapper) {
+    log.trace("copy query is:\n{}", sql);
+    jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+      CopyIn copyIn = con.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+      try {
+        for (T item : items) {
+          byte[] row = rowMapper.apply(item).toBytes();
+          copyIn.writeToCopy(row, 0, row.length);
+        }
+        copyIn.endCopy();
+      } finally {
+        if (copyIn.isActive()) {
+          copyIn.cancelCopy();
+        }
+      }
+      return null;
+    });
+  }
+
+  private Object copyValue(Field field, Object value) {
+    if (value == null) {
+      return null;
+    }
+    FieldType fieldType = field.getFieldType();
+    if (field.isMultiple()) {
+      return Arrays.stream((Object[]) value)
+          .map(v -> convertSingleValue(fieldType, v))
+          .toArray();
+    } else if (fieldType == FieldType.GEOMETRY) {
+      Geometry geometry = (Geometry) value;
+      return GeometryFormat.of(geometry)
+          .copyValue(geometry, ((GeometryField) field).getCrs().intValue());
+    } else {
+      return convertSingleValue(fieldType, value);
+    }
+  }
+
+  private boolean hasGeoJsonGeometry(Map<Field, Object> valueMap) {
+    return valueMap.entrySet().stream()
+        .filter(e -> e.getKey().getFieldType() == FieldType.GEOMETRY)
+        .filter(e -> e.getValue() != null && !e.getKey().isMultiple())
+        .anyMatch(e -> GeometryFormat.of((Geometry) e.getValue()) == GeometryFormat.GEOJSON);
+  }
+
+  private Map<RelationField, List<Object[]>> collectRelations(List<PendingRow> pending) {
+    Map<RelationField, List<Object[]>> relations = new LinkedHashMap<>();
+    pending.forEach(row -> row.getValueMap().entrySet().stream()
+        .filter(e -> innerField.negate().test(e.getKey()))
+        .forEach(e -> {
+          RelationField field = (RelationField) e.getKey();
+          List<Object[]> rows = relations.computeIfAbsent(field, k -> new ArrayList<>());
+          convertToIdList(field, e.getValue())
+              .forEach(related -> rows.add(new Object[]{row.getObject().getId(), related}));
+        }));
+    return relations;
+  }
+
+  private StatementTemplate template(String tableName, boolean update,
+                                     List<Map.Entry<Field, Object>> columns) {
+    List<StatementTemplate.Column> shape = new ArrayList<>(columns.size());
+    columns.forEach(column -> shape.add(templateColumn(column.getKey(), column.getValue())));
+    StatementTemplate.Key key = new StatementTemplate.Key(tableName, update, shape);
+
+    StatementTemplate template = statementTemplates.get(key);
+    if (template == null) {
+      if (statementTemplates.size() >= STATEMENT_CACHE_SIZE) {
+        statementTemplates.clear();
+      }
+      template = buildTemplate(tableName, update, columns);
+      statementTemplates.put(key, template);
+    }
+    return template;
+  }
+
+  private StatementTemplate buildTemplate(String tableName, boolean update,
+                                          List<Map.Entry<Field, Object>> columns) {
+    StringJoiner names = new StringJoiner(",");
+    StringJoiner parameters = new StringJoiner(",");
+    StringJoiner assignments = new StringJoiner(",");
+    List<BiFunction<Connection, Object, Object>> binders = new ArrayList<>(columns.size());
+    for (Map.Entry<Field, Object> column : columns) {
+      Field field = column.getKey();
+      String parameter = prepareParam(field, column.getValue());
+      names.add(field.getCodeName());
+      parameters.add(parameter);
+      assignments.add(field.getCodeName() + "=" + parameter);
+      binders.add(binder(field));
+    }
+    String sql = update
+        ? format("update {0} set {1} where id = ?", tableName, assignments)
+        : format("insert into {0} ({1}) VALUES ({2})", tableName, names, parameters);
+    return new StatementTemplate(sql, binders);
+  }
+
+  private StatementTemplate.Column templateColumn(Field field, Object value) {
+    Number crs = null;
+    GeometryFormat geometryFormat = null;
+    if (field.getFieldType() == FieldType.GEOMETRY) {
+      crs = ((GeometryField) field).getCrs();
+      geometryFormat = value == null ? null : GeometryFormat.of((Geometry) value);
+    }
+    return new StatementTemplate.Column(field.getCodeName(), field.getFieldType(),
+                                        field.isMultiple(), crs, geometryFormat);
+  }
+
+  private BiFunction<Connection, Object, Object> binder(Field field) {
+    FieldType fieldType = field.getFieldType();
+    if (field.isMultiple()) {
+      return (con, value) -> prepareMultipleValues(con, fieldType, (Object[]) value);
+    } else if (fieldType == FieldType.GEOMETRY) {
+      return (con, value) -> GeometryFormat.of((Geometry) value).parameter((Geometry) value);
+    } else {
+      return (con, value) -> convertSingleValue(fieldType, value);
+    }
+  }
+
+  private static List<Map.Entry<Field, Object>> innerColumns(Map<Field, Object> valueMap,
+                                                             boolean skipNulls) {
+    return valueMap.entrySet().stream()
+        .filter(e -> innerField.test(e.getKey()))
+        .filter(e -> !skipNulls || e.getValue() != null)
+        .collect(Collectors.toList());
+  }
+
+  private static List<Object> columnValues(List<Map.Entry<Field, Object>> columns) {
+    List<Object> values = new ArrayList<>(columns.size());
+    columns.forEach(column -> values.add(column.getValue()));
+    return values;
+  }
+
+  private void insertRelations(RelationField field, List<Object[]> rows) {
+    if (rows.isEmpty()) {
+      return;
+    }
+    String sql;
+    if (hasRelationTable.test(field)) {
+      sql = format("insert into {0} ({1}, {2}) values (?, ?)",
+                   relationTable(field), fieldSrcColumn(field), fieldDstColumn(field));
+    } else {
+      sql = format("update {0} set {1} = ? where id = ?",
+                   entityTypeTable(field.getRelates()), field.getReverseFieldCode());
+    }
+    log.trace("{} attribute batch query:\n{}", field.getCodeName(), sql);
+    jdbcTemplate.batchUpdate(sql, rows);
+    publishChanged(field.getRelates(), relatedIds(rows));
+  }
+
+  /**
+   * id связанных объектов из строк {@code [id объекта, id связанного объекта]}
+   */
+  private static List<Integer> relatedIds(List<Object[]> rows) {
+    return rows.stream().map(row -> (Integer) row[1]).collect(Collectors.toList());
+  }
+
   private void update(EntityType entityType, EntityObject object) {
     object.setEntityType(entityType.getCodeName());
     Map<Field, Object> valueMap = fullAttributeValueMap(entityType, object);
@@ -430,6 +1556,7 @@ public class EntityObjectRepository {
     valueMap.remove(CREATE_DATE);
     valueMap.remove(CREATE_USER);
     valueMap.remove(GUID);
+    valueMap.keySet().removeIf(field -> !isChanged(object, field));
 
     updateInnerFields(object, valueMap);
     valueMap.entrySet().stream()
@@ -437,15 +1564,69 @@ public class EntityObjectRepository {
         .forEach(e -> updateRelation(object.getId(), (RelationField) e.getKey(), e.getValue()));
   }
 
+  private boolean isChanged(EntityObject object, Field field) {
+    return field == CHANGE_DATE || field == CHANGE_USER || object.isChanged(field.getCodeName());
+  }
+
+  /**
+   * Обновить связь, применив только разницу между текущими и новыми связанными объектами
+   */
   private void updateRelation(int parentId, RelationField field, Object value) {
-    List<Integer> related = convertToIdList(field, value);
+    Set<Integer> related = new LinkedHashSet<>(convertToIdList(field, value));
+    Set<Integer> current = new HashSet<>(findRelated(parentId, field));
+
+    List<Integer> removed = current.stream()
+        .filter(id -> !related.contains(id))
+        .collect(Collectors.toList());
+    List<Integer> added = related.stream()
+        .filter(id -> !current.contains(id))
+        .collect(Collectors.toList());
+
     if (hasRelationTable.test(field)) {
-      clearWithRelationTable(parentId, field);
-      insertWithRelationTable(parentId, field, related);
+      String table = relationTable(field);
+      String src = fieldSrcColumn(field);
+      String dst = fieldDstColumn(field);
+      updateRelated(field, format("delete from {0} where {1} = ? and {2} = ANY(?)",
+                                  table, src, dst), parentId, removed);
+      updateRelated(field, format("insert into {0} ({1}, {2}) select ?, unnest(?)",
+                                  table, src, dst), parentId, added);
     } else {
-      clearReverseField(parentId, field);
-      insertReverseField(parentId, field, related);
+      String table = entityTypeTable(field.getRelates());
+      String reverse = field.getReverseFieldCode();
+      updateRelated(field, format("update {0} set {1} = null where {1} = ? and id = ANY(?)",
+                                  table, reverse), parentId, removed);
+      updateRelated(field, format("update {0} set {1} = ? where id = ANY(?)",
+                                  table, reverse), parentId, added);
+    }
+    // Связанные объекты показывают связь со своей стороны
+    List<Integer> affected = new ArrayList<>(removed);
+    affected.addAll(added);
+    publishChanged(field.getRelates(), affected);
+  }
+
+  private List<Integer> findRelated(int parentId, RelationField field) {
+    String sql;
+    if (hasRelationTable.test(field)) {
+      sql = format("select {0} from {1} where {2} = ?", fieldDstColumn(field),
+                   relationTable(field), fieldSrcColumn(field));
+    } else {
+      sql = format("select id from {0} where {1} = ?", entityTypeTable(field.getRelates()),
+                   field.getReverseFieldCode());
+    }
+    return jdbcTemplate.queryForList(sql, Integer.class, parentId);
+  }
+
+  private void updateRelated(RelationField field, String sql, int parentId, List<Integer> ids) {
+    if (ids.isEmpty()) {
+      return;
     }
+    log.trace("{} attribute delta query:\n{}", field.getCodeName(), sql);
+    jdbcTemplate.update(con -> {
+      PreparedStatement statement = con.prepareStatement(sql);
+      statement.setInt(1, parentId);
+      statement.setArray(2, con.createArrayOf("integer", ids.toArray()));
+      return statement;
+    });
   }
 
   private void insertRelation(int parentId, RelationField field, Object value) {
@@ -455,42 +1636,26 @@ public class EntityObjectRepository {
     } else {
       insertReverseField(parentId, field, related);
     }
+    publishChanged(field.getRelates(), related);
   }
 
   private void updateInnerFields(EntityObject object, Map<Field, Object> valueMap) {
-    jdbcTemplate.update(con -> {
-      String format = "update {0} set {1} where id = ?";
-      List<Object> params = new ArrayList<>();
-      StringJoiner columns = new StringJoiner(",");
-
-      valueMap.entrySet().stream().filter(entry -> innerField.test(entry.getKey()))
-          .forEach(entry -> {
-            Field field = entry.getKey();
-            params.add(prepareParamValue(con, field, entry.getValue()));
-            columns.add(field.getCodeName() + "=" + prepareParam(field, entry.getValue()));
-          });
-
-      String tableName = entityTypeTable(object.getEntityType());
-      String query = format(format, tableName, columns);
-      log.trace("{}#{} update query is\n{}", object.getEntityType(), object.getId(), query);
-      params.add(object.getId());
+    List<Map.Entry<Field, Object>> columns = innerColumns(valueMap, false);
+    if (columns.isEmpty()) {
+      return;
+    }
+    StatementTemplate template = template(entityTypeTable(object.getEntityType()), true, columns);
+    List<Object> values = columnValues(columns);
+    log.trace("{}#{} update query is\n{}", object.getEntityType(), object.getId(),
+              template.getSql());
 
-      PreparedStatement statement = con
-          .prepareStatement(query, new String[]{ID.getCodeName()});
-      for (int i = 0; i < params.size(); i++) {
-        statement.setObject(i + 1, params.get(i));
-      }
+    jdbcTemplate.update(con -> {
+      PreparedStatement statement = con.prepareStatement(template.getSql());
+      template.bind(statement, values, object.getId());
       return statement;
     });
   }
 
-  private void clearReverseField(int id, RelationField field) {
-    String sql = format("update {0} set {1} = null where {1} = ?",
-                        entityTypeTable(field.getRelates()), field.getReverseFieldCode());
-    log.trace("{} attribute clear query is:\n{}", field.getCodeName(), sql);
-    jdbcTemplate.update(sql, id);
-  }
-
   private void insertReverseField(int id, RelationField field, List<Integer> related) {
     String sql = format("update {0} set {1} = ? where id = ?",
                         entityTypeTable(field.getRelates()), field.getReverseFieldCode());
@@ -508,25 +1673,6 @@ public class EntityObjectRepository {
     jdbcTemplate.batchUpdate(sql, new RelationBatchUpdate(id, related));
   }
 
-  private void clearWithRelationTable(int id, RelationField field) {
-    String sql = format("delete from {0} where {1} = ?", relationTable(field),
-                        fieldSrcColumn(field));
-    log.trace("{} attribute delete query:\n{}", field.getCodeName(), sql);
-    jdbcTemplate.update(sql, id);
-  }
-
-  private Object prepareParamValue(Connection connection, Field field, Object value) {
-    if (value == null) {
-      return null;
-    }
-    FieldType fieldType = field.getFieldType();
-    if (field.isMultiple()) {
-      return prepareMultipleValues(connection, fieldType, (Object[]) value);
-    } else {
-      return convertSingleValue(fieldType, value);
-    }
-  }
-
   private Array prepareMultipleValues(Connection connection, FieldType fieldType, Object[] values) {
     Object[] converted = Arrays.stream(values)
         .map(v -> convertSingleValue(fieldType, v))
@@ -570,8 +1716,7 @@ public class EntityObjectRepository {
 
   private String prepareParam(Field field, Object value) {
     if (field.getFieldType() == FieldType.GEOMETRY && value != null) {
-      Geometry geomValue = (Geometry) value;
-      return format(GEOM_FUNCTION, geomValue.getType() == Type.WKT ? ST_FROM_TEXT : ST_FROM_GEOJSON,
+      return format(GEOM_FUNCTION, GeometryFormat.of((Geometry) value).getFunction(),
                     ((GeometryField) field).getCrs());
     } else if (field.getFieldType() == FieldType.ATTACHMENT) {
       return "?::JSONB";
@@ -579,4 +1724,23 @@ public class EntityObjectRepository {
       return "?";
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Новый объект, ожидающий пакетной записи
+   */
+  @Getter
+  private static class PendingRow {
+
+    private final EntityObject object;
+
+    private final Map<Field, Object> valueMap;
+
+    private final List<Map.Entry<Field, Object>> columns;
+
+    PendingRow(EntityObject object, Map<Field, Object> valueMap) {
+      this.object = object;
+      this.valueMap = valueMap;
+      this.columns = innerColumns(valueMap, true);
+    }
+  }
+}
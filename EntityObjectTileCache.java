@@ -0,0 +1,227 @@
+package com.example.core.objects.cache;
+
+import com.example.common.context.RequestContext;
+import com.example.core.layers.entities.Extent;
+import com.example.core.objects.repository.EntityObjectsChangedEvent;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import lombok.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Кэш векторных тайлов объектов.
+ *
+ * Объем кэша ограничен суммарным размером тайлов, при превышении вытесняются давно не
+ * использованные тайлы. Тайлы строятся с ограничениями доступа сервиса и хранятся отдельно для
+ * каждого пользователя. После завершения транзакции, изменившей объекты класса, сбрасываются
+ * тайлы, пересекающие охваты измененных геометрий, или все тайлы класса, если охваты неизвестны.
+ * Тайл, загруженный во время сброса, в кэш не попадает
+ */
+@Component
+@ManagedResource(objectName = "com.example.core:type=EntityObjectTileCache")
+public class EntityObjectTileCache {
+
+  /**
+   * Буфер тайла в долях его размера, как при построении тайла
+   */
+  private static final double TILE_MARGIN = 64.0 / 4096;
+
+  private final long maxWeight;
+
+  private final LinkedHashMap<TileKey, byte[]> tiles = new LinkedHashMap<>(256, 0.75f, true);
+
+  /**
+   * Ключи тайлов по классу объектов. Меняется под блокировкой кэша, читается без нее. Класс без
+   * тайлов в индексе отсутствует
+   */
+  private final Map<String, Set<TileKey>> typeTiles = new ConcurrentHashMap<>();
+
+  private long weight;
+
+  private long generation;
+
+  private long hits;
+
+  private long misses;
+
+  @Autowired
+  public EntityObjectTileCache(
+      @org.springframework.beans.factory.annotation.Value(
+          "${objects.cache.tiles.max-weight-bytes:134217728}") long maxWeight) {
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Получить тайл из кэша или построить его
+   *
+   * @param register кодовое имя сервиса
+   * @param entityType кодовое имя класса объектов
+   * @param field кодовое имя геометрического поля
+   * @param properties кодовые имена полей свойств
+   * @param z масштаб
+   * @param x номер тайла по горизонтали
+   * @param y номер тайла по вертикали
+   * @param loader построение тайла
+   * @return тайл
+   */
+  public byte[] get(String register, String entityType, String field, List<String> properties,
+                    int z, int x, int y, Supplier<byte[]> loader) {
+    TileKey key = new TileKey(register, RequestContext.getUser(), entityType.toLowerCase(), field,
+                              properties, z, x, y);
+    long loadGeneration;
+    synchronized (this) {
+      byte[] cached = tiles.get(key);
+      if (cached != null) {
+        hits++;
+        return cached;
+      }
+      misses++;
+      loadGeneration = generation;
+    }
+    byte[] tile = loader.get();
+    put(key, tile, loadGeneration);
+    return tile;
+  }
+
+  /**
+   * Есть ли в кэше тайлы класса объектов
+   *
+   * @param entityType кодовое имя класса объектов
+   */
+  public boolean hasTiles(String entityType) {
+    return typeTiles.containsKey(entityType.toLowerCase());
+  }
+
+  /**
+   * Удалить тайлы, затронутые изменением объектов, после завершения транзакции
+   */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+  public synchronized void onObjectsChanged(EntityObjectsChangedEvent event) {
+    generation++;
+    Set<TileKey> keys = typeTiles.get(event.getEntityType().toLowerCase());
+    if (keys == null) {
+      return;
+    }
+    List<Extent> bounds = event.getBounds();
+    new ArrayList<>(keys).stream()
+        .filter(key -> bounds == null || bounds.stream().anyMatch(key::intersects))
+        .forEach(this::remove);
+  }
+
+  @ManagedOperation(description = "Сбросить кэш тайлов")
+  public synchronized void clear() {
+    generation++;
+    tiles.clear();
+    typeTiles.clear();
+    weight = 0;
+  }
+
+  @ManagedAttribute(description = "Попадания в кэш тайлов")
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  @ManagedAttribute(description = "Промахи кэша тайлов")
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  @ManagedAttribute(description = "Количество тайлов в кэше")
+  public synchronized int getSize() {
+    return tiles.size();
+  }
+
+  @ManagedAttribute(description = "Суммарный размер тайлов в кэше в байтах")
+  public synchronized long getWeight() {
+    return weight;
+  }
+
+  private synchronized void put(TileKey key, byte[] tile, long loadGeneration) {
+    if (loadGeneration != generation || tile.length > maxWeight) {
+      return;
+    }
+    byte[] previous = tiles.put(key, tile);
+    if (previous != null) {
+      weight -= previous.length;
+    } else {
+      typeTiles.computeIfAbsent(key.getEntityType(), type -> new HashSet<>()).add(key);
+    }
+    weight += tile.length;
+
+    Iterator<Map.Entry<TileKey, byte[]>> eldest = tiles.entrySet().iterator();
+    while (weight > maxWeight && eldest.hasNext()) {
+      Map.Entry<TileKey, byte[]> evicted = eldest.next();
+      weight -= evicted.getValue().length;
+      eldest.remove();
+      unindex(evicted.getKey());
+    }
+  }
+
+  private void remove(TileKey key) {
+    byte[] tile = tiles.remove(key);
+    if (tile != null) {
+      weight -= tile.length;
+      unindex(key);
+    }
+  }
+
+  private void unindex(TileKey key) {
+    Set<TileKey> keys = typeTiles.get(key.getEntityType());
+    if (keys != null && keys.remove(key) && keys.isEmpty()) {
+      typeTiles.remove(key.getEntityType());
+    }
+  }
+
+  @Value
+  private static class TileKey {
+
+    String register;
+
+    String user;
+
+    String entityType;
+
+    String field;
+
+    List<String> properties;
+
+    int z;
+
+    int x;
+
+    int y;
+
+    /**
+     * Пересекает ли тайл с буфером охват в EPSG:4326
+     */
+    boolean intersects(Extent extent) {
+      double tiles = 1 << z;
+      double minLon = (x - TILE_MARGIN) / tiles * 360 - 180;
+      double maxLon = (x + 1 + TILE_MARGIN) / tiles * 360 - 180;
+      double maxLat = latitude((y - TILE_MARGIN) / tiles);
+      double minLat = latitude((y + 1 + TILE_MARGIN) / tiles);
+      return extent.getMinX() <= maxLon && extent.getMaxX() >= minLon
+          && extent.getMinY() <= maxLat && extent.getMaxY() >= minLat;
+    }
+
+    /**
+     * Широта по доле высоты мира в Web Mercator, считая сверху
+     */
+    private static double latitude(double fraction) {
+      return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * fraction))));
+    }
+  }
+}
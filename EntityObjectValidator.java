@@ -1,6 +1,7 @@
 package com.example.core.objects;
 
 import com.example.common.validation.Validated;
+import com.example.core.model.CompiledEntityType;
 import com.example.core.model.EntityUtils;
 import com.example.core.model.entities.EntityType;
 import com.example.core.model.entities.fields.BaseField;
@@ -54,7 +55,9 @@ public class EntityObjectValidator {
                        @NonNull Errors errors) {
     Map<BaseField, Object> valueMap = EntityUtils.attributeValueMap(entityType, object);
     if (object.isNew()) {
-      entityType.getFields().forEach(field -> validateField(field, valueMap.get(field), errors));
+      // Для нового объекта ошибки возможны только по обязательным полям
+      CompiledEntityType.of(entityType).getRequiredFields()
+          .forEach(field -> validateField(field, valueMap.get(field), errors));
     } else {
       valueMap.forEach((f, v) -> validateField(f, v, errors));
     }
@@ -0,0 +1,30 @@
+package com.example.core.objects.repository;
+
+import com.example.core.layers.entities.Extent;
+import java.util.Collection;
+import java.util.List;
+import lombok.Value;
+
+/**
+ * Событие изменения объектов класса в базе. Публикуется репозиторием при создании, изменении и
+ * удалении объектов
+ */
+@Value
+public class EntityObjectsChangedEvent {
+
+  /**
+   * Кодовое имя класса объектов
+   */
+  String entityType;
+
+  /**
+   * id измененных объектов
+   */
+  Collection<Integer> ids;
+
+  /**
+   * Охваты в EPSG:4326 геометрий измененных объектов до и после изменения. {@code null} - охваты
+   * неизвестны, изменения могли затронуть любую геометрию класса
+   */
+  List<Extent> bounds;
+}
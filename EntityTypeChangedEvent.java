@@ -0,0 +1,17 @@
+package com.example.core.model;
+
+import com.example.core.model.entities.EntityType;
+import lombok.Value;
+
+/**
+ * Событие изменения модели класса объектов: состава и признаков полей или удаления класса.
+ * Публикуется менеджером классов
+ */
+@Value
+public class EntityTypeChangedEvent {
+
+  /**
+   * Измененный класс объектов
+   */
+  EntityType entityType;
+}
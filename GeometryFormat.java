@@ -0,0 +1,105 @@
+package com.example.core.objects.repository;
+
+import com.example.common.exceptions.UnprocessableException;
+import com.example.core.objects.entities.attributes.Geometry;
+import com.example.core.objects.entities.attributes.Geometry.Type;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.regex.Pattern;
+
+/**
+ * Формат геометрии при записи в базу.
+ *
+ * Геометрия в шестнадцатеричном (E)WKB передается в базу байтами и не разбирается как текст ни
+ * в приложении, ни в PostgreSQL
+ */
+enum GeometryFormat {
+  WKT("ST_GeomFromText"),
+  GEOJSON("ST_GeomFromGeoJSON"),
+  EWKB("ST_GeomFromEWKB");
+
+  /**
+   * Флаг наличия SRID в типе геометрии EWKB
+   */
+  private static final int SRID_FLAG = 0x20000000;
+
+  private static final Pattern HEX = Pattern.compile("^(00|01)(?:[0-9A-Fa-f]{2})+$");
+
+  private final String function;
+
+  GeometryFormat(String function) {
+    this.function = function;
+  }
+
+  /**
+   * Функция PostGIS, строящая геометрию из параметра запроса
+   */
+  String getFunction() {
+    return function;
+  }
+
+  static GeometryFormat of(Geometry geometry) {
+    if (geometry.getType() != Type.WKT) {
+      return GEOJSON;
+    }
+    String value = geometry.getGeometry();
+    return value != null && HEX.matcher(value).matches() ? EWKB : WKT;
+  }
+
+  /**
+   * Значение геометрии для параметра запроса
+   */
+  Object parameter(Geometry geometry) {
+    return this == EWKB ? decode(geometry.getGeometry()) : geometry.getGeometry();
+  }
+
+  /**
+   * Значение геометрии для COPY в текстовом виде с проекцией поля
+   *
+   * @param geometry геометрия
+   * @param srid код проекции поля
+   */
+  String copyValue(Geometry geometry, int srid) {
+    if (this == EWKB) {
+      return encode(withSrid(decode(geometry.getGeometry()), srid));
+    }
+    return "SRID=" + srid + ";" + geometry.getGeometry();
+  }
+
+  private static byte[] decode(String hex) {
+    byte[] bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+    }
+    return bytes;
+  }
+
+  private static String encode(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Записать проекцию в заголовок EWKB. Проекция, уже записанная в геометрию, заменяется
+   */
+  private static byte[] withSrid(byte[] wkb, int srid) {
+    if (wkb.length < 5) {
+      throw new UnprocessableException("Invalid WKB geometry");
+    }
+    ByteBuffer source = ByteBuffer.wrap(wkb)
+        .order(wkb[0] == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    int type = source.getInt(1);
+    boolean hasSrid = (type & SRID_FLAG) != 0;
+    int headerLength = hasSrid ? 9 : 5;
+    if (wkb.length < headerLength) {
+      throw new UnprocessableException("Invalid WKB geometry");
+    }
+    ByteBuffer target = ByteBuffer.allocate(wkb.length - headerLength + 9).order(source.order());
+    target.put(wkb[0]).putInt(type | SRID_FLAG).putInt(srid);
+    target.put(wkb, headerLength, wkb.length - headerLength);
+    return target.array();
+  }
+}
@@ -0,0 +1,38 @@
+package com.example.core.objects.entities;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Результат загрузки нескольких объектов по id и guid
+ *
+ * @param <T> тип объектов
+ */
+@Getter
+@AllArgsConstructor
+public class ObjectBatch<T> {
+
+  /**
+   * Найденные объекты в порядке запроса: сначала по id, затем по guid
+   */
+  private final List<T> objects;
+
+  /**
+   * Запрошенные id, объекты которых не найдены
+   */
+  private final List<Integer> missingIds;
+
+  /**
+   * Запрошенные guid, объекты которых не найдены
+   */
+  private final List<UUID> missingGuids;
+
+  public <R> ObjectBatch<R> map(Function<? super T, ? extends R> mapper) {
+    return new ObjectBatch<>(objects.stream().map(mapper).collect(Collectors.toList()),
+                             missingIds, missingGuids);
+  }
+}
@@ -0,0 +1,125 @@
+package com.example.core.objects.repository;
+
+import static com.example.core.model.EntityUtils.innerField;
+
+import com.example.common.exceptions.UnprocessableException;
+import com.example.core.model.entities.Field;
+import com.example.core.model.entities.FieldType;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import lombok.Getter;
+
+/**
+ * Позиция постраничного чтения объектов по ключу (keyset pagination).
+ *
+ * Хранит поле и направление сортировки, а также значение поля сортировки и id последнего
+ * прочитанного объекта. Следующая страница читается условием по этим значениям вместо OFFSET,
+ * поэтому ее стоимость не зависит от номера страницы. Клиенту передается в виде непрозрачной
+ * строки {@link #encode()}
+ */
+@Getter
+public final class ObjectCursor {
+
+  private static final char SEPARATOR = '|';
+
+  private static final String NULL_VALUE = "-";
+
+  private static final String VALUE_PREFIX = "=";
+
+  /**
+   * Кодовое имя поля сортировки. {@code null} - сортировка только по id
+   */
+  private final String sortField;
+
+  private final boolean descending;
+
+  /**
+   * id последнего прочитанного объекта. 0 - чтение с начала
+   */
+  private final int id;
+
+  /**
+   * Значение поля сортировки последнего прочитанного объекта в текстовом виде PostgreSQL
+   */
+  private final String value;
+
+  private ObjectCursor(String sortField, boolean descending, int id, String value) {
+    this.sortField = sortField;
+    this.descending = descending;
+    this.id = id;
+    this.value = value;
+  }
+
+  /**
+   * Позиция начала чтения
+   *
+   * @param sortField поле сортировки или {@code null}
+   * @param descending сортировка по убыванию
+   * @throws UnprocessableException по полю нельзя читать по ключу
+   */
+  public static ObjectCursor start(Field sortField, boolean descending) {
+    if (sortField != null && !supports(sortField)) {
+      throw new UnprocessableException(
+          "Field " + sortField.getCodeName() + " can't be used for cursor pagination");
+    }
+    return new ObjectCursor(sortField == null ? null : sortField.getCodeName(), descending, 0,
+                            null);
+  }
+
+  /**
+   * Узнать, можно ли использовать поле как ключ сортировки. Подходят только простые
+   * одиночные поля, хранящиеся в таблице класса
+   */
+  public static boolean supports(Field field) {
+    FieldType fieldType = field.getFieldType();
+    return innerField.test(field) && !field.isMultiple()
+        && fieldType != FieldType.GEOMETRY && fieldType != FieldType.ATTACHMENT;
+  }
+
+  /**
+   * Прочитать позицию из строки
+   *
+   * @param token строка, полученная из {@link #encode()}
+   * @throws UnprocessableException строка не является позицией
+   */
+  public static ObjectCursor decode(String token) {
+    try {
+      String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      String[] parts = decoded.split("\\|", 4);
+      String value = parts[3].startsWith(VALUE_PREFIX) ? parts[3].substring(1) : null;
+      return new ObjectCursor(parts[0].isEmpty() ? null : parts[0], "d".equals(parts[1]),
+                              Integer.parseInt(parts[2]), value);
+    } catch (RuntimeException e) {
+      throw new UnprocessableException("Invalid cursor", e);
+    }
+  }
+
+  /**
+   * Узнать, указывает ли позиция на прочитанный объект
+   */
+  public boolean hasPosition() {
+    return id > 0;
+  }
+
+  /**
+   * Позиция после указанного объекта с тем же порядком сортировки
+   *
+   * @param id id объекта
+   * @param value значение поля сортировки объекта
+   */
+  ObjectCursor after(int id, String value) {
+    return new ObjectCursor(sortField, descending, id, value);
+  }
+
+  /**
+   * Записать позицию в строку для передачи клиенту
+   */
+  public String encode() {
+    String token = (sortField == null ? "" : sortField) + SEPARATOR
+        + (descending ? "d" : "a") + SEPARATOR
+        + id + SEPARATOR
+        + (value == null ? NULL_VALUE : VALUE_PREFIX + value);
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(token.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,66 @@
+package com.example.core.objects.entities;
+
+import lombok.Data;
+
+/**
+ * Параметры чтения объектов: подсчет количества, упрощение геометрий и пространственный фильтр
+ */
+@Data
+public class ObjectQueryOptions {
+
+  /**
+   * Проекция по умолчанию для прямоугольника и геометрии пространственного фильтра
+   */
+  public static final int DEFAULT_FILTER_SRID = 4326;
+
+  /**
+   * Способ подсчета общего количества объектов страницы
+   */
+  private CountMode count = CountMode.EXACT;
+
+  /**
+   * Допуск упрощения геометрии в единицах проекции результата. {@code null} - без упрощения
+   */
+  private Double simplifyTolerance;
+
+  /**
+   * Количество знаков после запятой в координатах. {@code null} - полная точность
+   */
+  private Integer precision;
+
+  /**
+   * Прямоугольник пространственного фильтра: minX, minY, maxX, maxY
+   */
+  private double[] bbox;
+
+  /**
+   * Геометрия в WKT, с которой должны пересекаться объекты
+   */
+  private String intersects;
+
+  /**
+   * Код проекции прямоугольника и геометрии пространственного фильтра
+   */
+  private int filterSrid = DEFAULT_FILTER_SRID;
+
+  /**
+   * Кодовое имя геометрического поля пространственного фильтра. Если не задано - первое
+   * геометрическое поле класса
+   */
+  private String geometryField;
+
+  /**
+   * Заданы ли параметры, меняющие геометрию
+   */
+  public boolean isGeometryReduced() {
+    return simplifyTolerance != null && simplifyTolerance > 0
+        || precision != null && precision >= 0;
+  }
+
+  /**
+   * Задан ли пространственный фильтр
+   */
+  public boolean isSpatial() {
+    return bbox != null || intersects != null && !intersects.trim().isEmpty();
+  }
+}
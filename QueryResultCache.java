@@ -0,0 +1,113 @@
+package com.example.core.objects.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Кэш результатов запросов с ограничением устаревания и размера.
+ *
+ * Значение, загруженное во время сброса кэша, не сохраняется: перед сохранением сверяется
+ * поколение кэша, которое увеличивается при каждом сбросе. Так результат, прочитанный до записи,
+ * не может попасть в кэш после нее
+ *
+ * @param <K> ключ запроса
+ * @param <V> результат запроса
+ */
+public class QueryResultCache<K, V> {
+
+  private final long maxStalenessMillis;
+
+  private final int maxSize;
+
+  private final Map<K, CachedValue<V>> values = new ConcurrentHashMap<>();
+
+  private final AtomicLong generation = new AtomicLong();
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * @param maxStalenessMillis максимальный возраст значения в миллисекундах
+   * @param maxSize максимальное количество значений, при превышении кэш очищается
+   */
+  public QueryResultCache(long maxStalenessMillis, int maxSize) {
+    this.maxStalenessMillis = maxStalenessMillis;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Получить значение из кэша или загрузить его
+   *
+   * @param key ключ запроса
+   * @param loader загрузка значения при отсутствии в кэше
+   * @return значение
+   */
+  public V get(K key, Supplier<V> loader) {
+    long now = System.currentTimeMillis();
+    CachedValue<V> cached = values.get(key);
+    if (cached != null && now - cached.loadedAt <= maxStalenessMillis) {
+      hits.incrementAndGet();
+      return cached.value;
+    }
+    misses.incrementAndGet();
+
+    long loadGeneration = generation.get();
+    V value = loader.get();
+    if (value != null && maxStalenessMillis > 0) {
+      if (values.size() >= maxSize) {
+        values.clear();
+      }
+      values.put(key, new CachedValue<>(value, now));
+      if (generation.get() != loadGeneration) {
+        values.remove(key);
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Сбросить значения, ключи которых удовлетворяют условию
+   *
+   * @param keys условие на ключ
+   */
+  public void invalidate(Predicate<K> keys) {
+    generation.incrementAndGet();
+    values.keySet().removeIf(keys);
+  }
+
+  /**
+   * Сбросить все значения
+   */
+  public void clear() {
+    generation.incrementAndGet();
+    values.clear();
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public int getSize() {
+    return values.size();
+  }
+
+  private static final class CachedValue<V> {
+
+    private final V value;
+
+    private final long loadedAt;
+
+    private CachedValue(V value, long loadedAt) {
+      this.value = value;
+      this.loadedAt = loadedAt;
+    }
+  }
+}
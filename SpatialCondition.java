@@ -0,0 +1,104 @@
+package com.example.core.objects.repository;
+
+import static com.example.core.model.DbNameProvider.entityTypeTable;
+import static java.text.MessageFormat.format;
+
+import com.example.common.exceptions.UnprocessableException;
+import com.example.core.model.entities.fields.GeometryField;
+import com.example.core.objects.entities.ObjectQueryOptions;
+import java.util.List;
+import java.util.StringJoiner;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Пространственное условие на объекты: пересечение геометрического поля с прямоугольником и
+ * геометрией фильтра.
+ *
+ * Прямоугольник и геометрия фильтра переводятся в проекцию поля один раз, а условие {@code &&}
+ * по колонке поля использует пространственный индекс. Точная проверка {@code ST_Intersects}
+ * выполняется только для строк, прошедших индекс.
+ *
+ * EntitySelectBuilder не умеет добавлять пространственные условия, поэтому запрос объектов
+ * оборачивается подзапросом с условием {@link #idIn} по таблице класса, а не компилируется
+ * построителем
+ */
+public final class SpatialCondition {
+
+  private final GeometryField field;
+
+  private final double[] bbox;
+
+  private final String intersects;
+
+  private final int srid;
+
+  private SpatialCondition(GeometryField field, double[] bbox, String intersects, int srid) {
+    this.field = field;
+    this.bbox = bbox;
+    this.intersects = intersects;
+    this.srid = srid;
+  }
+
+  /**
+   * Условие по параметрам чтения
+   *
+   * @param field геометрическое поле
+   * @param options параметры чтения с пространственным фильтром
+   * @return условие или {@code null}, если пространственный фильтр не задан
+   * @throws UnprocessableException прямоугольник задан не четырьмя координатами
+   */
+  public static SpatialCondition of(GeometryField field, ObjectQueryOptions options) {
+    if (!options.isSpatial()) {
+      return null;
+    }
+    if (options.getBbox() != null && options.getBbox().length != 4) {
+      throw new UnprocessableException("bbox must contain minX, minY, maxX, maxY");
+    }
+    return new SpatialCondition(field, options.getBbox(),
+                                StringUtils.trimToNull(options.getIntersects()),
+                                options.getFilterSrid());
+  }
+
+  /**
+   * Условие по колонке поля в таблице класса. Параметры условия добавляются в {@code params}
+   *
+   * @param alias псевдоним таблицы класса
+   */
+  String where(String alias, List<Object> params) {
+    String column = alias + "." + field.getCodeName();
+    StringJoiner where = new StringJoiner(" and ");
+    if (bbox != null) {
+      String envelope = format("ST_Transform(ST_MakeEnvelope(?, ?, ?, ?, ?), {0,number,#})",
+                               field.getCrs());
+      where.add(format("{0} && {1} and ST_Intersects({0}, {1})", column, envelope));
+      for (int i = 0; i < 2; i++) {
+        for (double coordinate : bbox) {
+          params.add(coordinate);
+        }
+        params.add(srid);
+      }
+    }
+    if (intersects != null) {
+      String geometry = format("ST_Transform(ST_GeomFromText(?, ?), {0,number,#})",
+                               field.getCrs());
+      where.add(format("{0} && {1} and ST_Intersects({0}, {1})", column, geometry));
+      for (int i = 0; i < 2; i++) {
+        params.add(intersects);
+        params.add(srid);
+      }
+    }
+    return where.toString();
+  }
+
+  /**
+   * Условие на id объектов подзапроса построителя. Отбор по индексу идет в таблице класса, а с
+   * запросом построителя условие соединяется по id. Параметры условия добавляются в
+   * {@code params}
+   *
+   * @param idColumn колонка id
+   */
+  String idIn(String idColumn, List<Object> params) {
+    return format("{0} in (select s.id from {1} s where {2})", idColumn,
+                  entityTypeTable(field.getEntityType()), where("s", params));
+  }
+}
@@ -0,0 +1,84 @@
+package com.example.core.objects.repository;
+
+import com.example.core.model.entities.FieldType;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.BiFunction;
+import lombok.Getter;
+import lombok.Value;
+
+/**
+ * Готовый шаблон INSERT/UPDATE запроса для одного набора колонок класса объектов.
+ *
+ * Хранит текст запроса и упорядоченные функции подготовки значений колонок, поэтому повторная
+ * запись объектов того же вида не строит sql заново, а одинаковый текст запроса позволяет
+ * драйверу переиспользовать серверные prepared statements
+ */
+final class StatementTemplate {
+
+  @Getter
+  private final String sql;
+
+  private final List<BiFunction<Connection, Object, Object>> binders;
+
+  StatementTemplate(String sql, List<BiFunction<Connection, Object, Object>> binders) {
+    this.sql = sql;
+    this.binders = binders;
+  }
+
+  /**
+   * Установить параметры запроса
+   *
+   * @param statement подготовленный запрос
+   * @param values значения колонок в порядке шаблона
+   * @param extra дополнительные параметры после колонок (например id для UPDATE)
+   */
+  void bind(PreparedStatement statement, List<Object> values, Object... extra)
+      throws SQLException {
+    Connection connection = statement.getConnection();
+    int index = 1;
+    for (int i = 0; i < binders.size(); i++) {
+      Object value = values.get(i);
+      statement.setObject(index++, value == null ? null
+          : binders.get(i).apply(connection, value));
+    }
+    for (Object param : extra) {
+      statement.setObject(index++, param);
+    }
+  }
+
+  /**
+   * Ключ шаблона: таблица, вид запроса и описание колонок.
+   *
+   * Описание колонки включает все, от чего зависит текст параметра, поэтому изменение поля
+   * класса объектов (тип, множественность, проекция) или формата геометрии дает новый ключ
+   */
+  @Value
+  static class Key {
+
+    String tableName;
+
+    boolean update;
+
+    List<Column> columns;
+  }
+
+  /**
+   * Описание колонки шаблона
+   */
+  @Value
+  static class Column {
+
+    String codeName;
+
+    FieldType fieldType;
+
+    boolean multiple;
+
+    Number crs;
+
+    GeometryFormat geometryFormat;
+  }
+}
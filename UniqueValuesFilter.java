@@ -0,0 +1,30 @@
+package com.example.core.objects.entities;
+
+import lombok.Data;
+
+/**
+ * Фильтр уникальных значений поля
+ */
+@Data
+public class UniqueValuesFilter {
+
+  /**
+   * Максимальное количество значений. {@code null} - без ограничения
+   */
+  private Integer limit;
+
+  /**
+   * Начало значения, без учета регистра
+   */
+  private String prefix;
+
+  /**
+   * Фильтр объектов CQL
+   */
+  private String cql;
+
+  /**
+   * Упорядочить значения по убыванию количества объектов, иначе по значению
+   */
+  private boolean byFrequency;
+}